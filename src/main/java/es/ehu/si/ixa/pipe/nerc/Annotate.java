@@ -33,6 +33,11 @@ import java.util.Properties;
 
 import opennlp.tools.util.Span;
 import opennlp.tools.util.TrainingParameters;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
 import es.ehu.si.ixa.pipe.nerc.dict.Dictionaries;
 import es.ehu.si.ixa.pipe.nerc.train.InputOutputUtils;
 import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
@@ -83,6 +88,15 @@ public class Annotate {
    * Activates name finding using {@code NameFinderLexer}s.
    */
   private boolean lexerFind;
+  /**
+   * The metrics of the annotation, or null if not measured.
+   */
+  private AnnotateMetrics metrics;
+  /**
+   * The named entity spans of the last tagged sentences, by tokens, or null
+   * if the sentences are not cached.
+   */
+  private Cache<List<String>, Span[]> sentenceCache;
 
   /**
    * @param properties
@@ -97,6 +111,81 @@ public class Annotate {
 
     nameFactory = new NameFactory();
     annotateOptions(properties, params);
+    createSentenceCache(params);
+  }
+
+  /**
+   * Creates the cache of the tagged sentences if a SentenceCacheSize is
+   * given. The spans of a sentence only depend on its tokens if the
+   * statistical name finder clears its adaptive data after every sentence,
+   * as the {@link StatisticalNameFinder} and the {@link MultiModelNameFinder}
+   * do; the dictionary and numeric name finders do not keep any context.
+   * Otherwise the sentences are not cached.
+   */
+  private void createSentenceCache(TrainingParameters params) {
+    int cacheSize = InputOutputUtils.getSentenceCacheSize(params);
+    if (cacheSize <= 0) {
+      return;
+    }
+    if (statistical && !(nameFinder instanceof StatisticalNameFinder)
+        && !(nameFinder instanceof MultiModelNameFinder)) {
+      System.err.println("The name finder keeps context between sentences, "
+          + "sentences will not be cached!");
+      return;
+    }
+    sentenceCache = CacheBuilder.newBuilder().maximumSize(cacheSize)
+        .recordStats().build();
+  }
+
+  /**
+   * Retrieves the statistics of the cache of the tagged sentences.
+   *
+   * @return the hits and misses of the cache, or null if the sentences are
+   *         not cached
+   */
+  public final CacheStats getSentenceCacheStats() {
+    return sentenceCache == null ? null : sentenceCache.stats();
+  }
+
+  /**
+   * Sets the metrics where the time of every annotation stage is recorded.
+   *
+   * @param aMetrics
+   *          the metrics, or null to stop measuring
+   */
+  public final void setMetrics(final AnnotateMetrics aMetrics) {
+    this.metrics = aMetrics;
+  }
+
+  private void record(final AnnotateMetrics.Stage stage, final long start) {
+    if (metrics != null) {
+      metrics.record(stage, start);
+    }
+  }
+
+  /**
+   * Creates the statistical name finder: a {@link MultiModelNameFinder} if
+   * several TagModels are specified, a {@link StatisticalNameFinder}
+   * otherwise.
+   */
+  private NameFinder createNameFinder(Properties properties,
+      TrainingParameters params) throws IOException {
+    if (InputOutputUtils.getTagModels(params) != null) {
+      return new MultiModelNameFinder(params, nameFactory);
+    }
+    return new StatisticalNameFinder(properties, params, nameFactory);
+  }
+
+  /**
+   * Drops the overlapping spans of a sentence, keeping the entities of
+   * several models separate if required.
+   */
+  private Span[] dropOverlappingSpans(List<Span> spans) {
+    if (statistical && nameFinder instanceof MultiModelNameFinder) {
+      return ((MultiModelNameFinder) nameFinder).dropOverlappingSpans(spans);
+    }
+    return NameClassifier.dropOverlappingSpans(spans
+        .toArray(new Span[spans.size()]));
   }
 
   /**
@@ -135,13 +224,13 @@ public class Annotate {
           postProcess = false;
           statistical = false;
         } else if (dictOption.equalsIgnoreCase("post")) {
-          nameFinder = new StatisticalNameFinder(properties, params, nameFactory);
+          nameFinder = createNameFinder(properties, params);
           statistical = true;
           postProcess = true;
           dictTag = false;
         }
       } else {
-        nameFinder = new StatisticalNameFinder(properties, params, nameFactory);
+        nameFinder = createNameFinder(properties, params);
         statistical = true;
         dictTag = false;
         postProcess = false;
@@ -152,14 +241,14 @@ public class Annotate {
       statistical = true;
       dictTag = false;
       postProcess = false;
-      nameFinder = new StatisticalNameFinder(properties, params, nameFactory);
+      nameFinder = createNameFinder(properties, params);
     }
     else {
       lexerFind = false;
       statistical = true;
       dictTag = false;
       postProcess = false;
-      nameFinder = new StatisticalNameFinder(properties, params, nameFactory);
+      nameFinder = createNameFinder(properties, params);
     }
   }
 
@@ -174,7 +263,6 @@ public class Annotate {
    */
   public final void annotateNEs(final KAFDocument kaf) throws IOException {
 
-    List<Span> allSpans = new ArrayList<Span>();
     List<List<WF>> sentences = kaf.getSentences();
     for (List<WF> sentence : sentences) {
       String[] tokens = new String[sentence.size()];
@@ -183,27 +271,19 @@ public class Annotate {
         tokens[i] = sentence.get(i).getForm();
         tokenIds[i] = sentence.get(i).getId();
       }
-      if (statistical) {
-        allSpans = nameFinder.nercToSpans(tokens);
-      }
-      if (postProcess) {
-        List<Span> dictSpans = dictFinder.nercToSpansExact(tokens);
-        SpanUtils.postProcessDuplicatedSpans(allSpans, dictSpans);
-        SpanUtils.concatenateSpans(allSpans, dictSpans);
+      Span[] allSpansArray = null;
+      List<String> cacheKey = null;
+      if (sentenceCache != null) {
+        cacheKey = Arrays.asList(tokens);
+        allSpansArray = sentenceCache.getIfPresent(cacheKey);
       }
-      if (dictTag) {
-        allSpans = dictFinder.nercToSpansExact(tokens);
-      }
-      if (lexerFind) {
-        String sentenceText = StringUtils.getStringFromTokens(tokens);
-        StringReader stringReader = new StringReader(sentenceText);
-        BufferedReader sentenceReader = new BufferedReader(stringReader);
-        numericLexerFinder = new NumericNameFinder(sentenceReader, nameFactory);
-        List<Span> numericSpans = numericLexerFinder.nercToSpans(tokens);
-        SpanUtils.concatenateSpans(allSpans, numericSpans);
+      if (allSpansArray == null) {
+        allSpansArray = findSpans(tokens);
+        if (sentenceCache != null) {
+          sentenceCache.put(cacheKey, allSpansArray);
+        }
       }
-      Span[] allSpansArray = NameClassifier.dropOverlappingSpans(allSpans
-          .toArray(new Span[allSpans.size()]));
+      long start = AnnotateMetrics.start();
       List<Name> names = new ArrayList<Name>();
       if (statistical) {
         names = nameFinder.getNamesFromSpans(allSpansArray, tokens);
@@ -221,9 +301,56 @@ public class Annotate {
         Entity neEntity = kaf.newEntity(references);
         neEntity.setType(name.getType());
       }
+      record(AnnotateMetrics.Stage.ENTITIES, start);
+      if (metrics != null) {
+        metrics.countSentence(tokens.length, names.size());
+      }
     }
   }
   
+  /**
+   * Finds the named entities of a sentence with the statistical, dictionary
+   * and numeric name finders, dropping the overlapping ones.
+   *
+   * @param tokens
+   *          the tokens of the sentence
+   * @return the spans of the named entities
+   */
+  private Span[] findSpans(final String[] tokens) {
+    List<Span> allSpans = new ArrayList<Span>();
+    if (statistical) {
+      long start = AnnotateMetrics.start();
+      allSpans = nameFinder.nercToSpans(tokens);
+      record(AnnotateMetrics.Stage.TAG, start);
+    }
+    if (postProcess) {
+      long start = AnnotateMetrics.start();
+      List<Span> dictSpans = dictFinder.nercToSpansExact(tokens);
+      SpanUtils.postProcessDuplicatedSpans(allSpans, dictSpans);
+      SpanUtils.concatenateSpans(allSpans, dictSpans);
+      record(AnnotateMetrics.Stage.DICTIONARY, start);
+    }
+    if (dictTag) {
+      long start = AnnotateMetrics.start();
+      allSpans = dictFinder.nercToSpansExact(tokens);
+      record(AnnotateMetrics.Stage.DICTIONARY, start);
+    }
+    if (lexerFind) {
+      long start = AnnotateMetrics.start();
+      String sentenceText = StringUtils.getStringFromTokens(tokens);
+      StringReader stringReader = new StringReader(sentenceText);
+      BufferedReader sentenceReader = new BufferedReader(stringReader);
+      numericLexerFinder = new NumericNameFinder(sentenceReader, nameFactory);
+      List<Span> numericSpans = numericLexerFinder.nercToSpans(tokens);
+      SpanUtils.concatenateSpans(allSpans, numericSpans);
+      record(AnnotateMetrics.Stage.NUMERIC, start);
+    }
+    long start = AnnotateMetrics.start();
+    Span[] allSpansArray = dropOverlappingSpans(allSpans);
+    record(AnnotateMetrics.Stage.OVERLAP, start);
+    return allSpansArray;
+  }
+
   /**
    * Output annotation as NAF.
    * @param kaf the naf document
@@ -0,0 +1,158 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc;
+
+import java.util.Locale;
+
+/**
+ * Latency and throughput metrics of the annotation. Every {@link Stage}
+ * keeps the number of calls, the total time and a histogram of the latencies
+ * with power of two buckets, from which the percentiles are approximated by
+ * the upper bound of their bucket. The number of sentences, tokens and
+ * entities gives the throughput over the time spent in all the stages.
+ *
+ * @author ragerri
+ */
+public class AnnotateMetrics {
+
+  /**
+   * The timed stages of the annotation.
+   */
+  public static enum Stage {
+    PARSE("NAF parse"), TAG("statistical tagging"), DICTIONARY(
+        "dictionary matching"), NUMERIC("numeric lexing"), OVERLAP(
+        "overlap resolution"), ENTITIES("entity insertion"), SERIALIZE(
+        "serialisation");
+
+    private final String description;
+
+    Stage(String description) {
+      this.description = description;
+    }
+
+    public String toString() {
+      return description;
+    }
+  }
+
+  /**
+   * The number of histogram buckets: bucket b counts the latencies from
+   * 2^(b-1) to 2^b - 1 nanoseconds.
+   */
+  private static final int NUM_BUCKETS = 64;
+
+  private final long[] counts = new long[Stage.values().length];
+  private final long[] totalNanos = new long[Stage.values().length];
+  private final long[] maxNanos = new long[Stage.values().length];
+  private final long[][] histograms = new long[Stage.values().length][NUM_BUCKETS];
+  private long sentences;
+  private long tokens;
+  private long entities;
+
+  /**
+   * Gets the current time, to be passed to {@link #record(Stage, long)} at
+   * the end of a stage.
+   *
+   * @return the current time in nanoseconds
+   */
+  public static long start() {
+    return System.nanoTime();
+  }
+
+  /**
+   * Records a call to a stage.
+   *
+   * @param stage the stage
+   * @param startNanos the value of {@link #start()} at the beginning of the
+   *          stage
+   */
+  public synchronized void record(Stage stage, long startNanos) {
+    long nanos = Math.max(0, System.nanoTime() - startNanos);
+    int s = stage.ordinal();
+    counts[s]++;
+    totalNanos[s] += nanos;
+    maxNanos[s] = Math.max(maxNanos[s], nanos);
+    histograms[s][64 - Long.numberOfLeadingZeros(nanos)]++;
+  }
+
+  /**
+   * Counts a tagged sentence.
+   *
+   * @param numTokens the number of tokens of the sentence
+   * @param numEntities the number of entities found
+   */
+  public synchronized void countSentence(int numTokens, int numEntities) {
+    sentences++;
+    tokens += numTokens;
+    entities += numEntities;
+  }
+
+  /**
+   * Approximates a percentile of the latencies of a stage by the upper bound
+   * of its histogram bucket.
+   */
+  private long percentile(int s, double fraction) {
+    long rank = (long) Math.ceil(counts[s] * fraction);
+    long seen = 0;
+    for (int b = 0; b < NUM_BUCKETS; b++) {
+      seen += histograms[s][b];
+      if (seen >= rank) {
+        return Math.min(maxNanos[s], b == 0 ? 0 : (1L << b) - 1);
+      }
+    }
+    return maxNanos[s];
+  }
+
+  private static String millis(long nanos) {
+    return String.format(Locale.ENGLISH, "%.3f", nanos / 1e6);
+  }
+
+  /**
+   * Reports the metrics of every stage and the throughput.
+   *
+   * @return the report, one line per stage
+   */
+  public synchronized String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("stage\tcalls\ttotal ms\tmean ms\tp50 ms\tp90 ms\tp99 ms\tmax ms\n");
+    long allNanos = 0;
+    for (Stage stage : Stage.values()) {
+      int s = stage.ordinal();
+      if (counts[s] == 0) {
+        continue;
+      }
+      allNanos += totalNanos[s];
+      sb.append(stage).append("\t").append(counts[s]).append("\t")
+          .append(millis(totalNanos[s])).append("\t")
+          .append(millis(totalNanos[s] / counts[s])).append("\t")
+          .append(millis(percentile(s, 0.5))).append("\t")
+          .append(millis(percentile(s, 0.9))).append("\t")
+          .append(millis(percentile(s, 0.99))).append("\t")
+          .append(millis(maxNanos[s])).append("\n");
+    }
+    double seconds = allNanos / 1e9;
+    sb.append("sentences: ").append(sentences).append(", tokens: ")
+        .append(tokens).append(", entities: ").append(entities).append("\n");
+    if (seconds > 0) {
+      sb.append(String.format(Locale.ENGLISH,
+          "tokens/sec: %.1f, entities/sec: %.1f", tokens / seconds, entities
+              / seconds));
+    }
+    return sb.toString();
+  }
+
+}
@@ -19,30 +19,44 @@ import ixa.kaflib.KAFDocument;
 
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
+import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
+import java.util.Locale;
 import java.util.Properties;
 
 import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
 import net.sourceforge.argparse4j.inf.ArgumentParser;
 import net.sourceforge.argparse4j.inf.ArgumentParserException;
 import net.sourceforge.argparse4j.inf.Namespace;
 import net.sourceforge.argparse4j.inf.Subparser;
 import net.sourceforge.argparse4j.inf.Subparsers;
+import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.TrainingParameters;
 
 import org.jdom2.JDOMException;
 
+import com.google.common.cache.CacheStats;
 import com.google.common.io.Files;
 
 import es.ehu.si.ixa.pipe.nerc.eval.CorpusEvaluate;
+import es.ehu.si.ixa.pipe.nerc.eval.DecoderBenchmark;
 import es.ehu.si.ixa.pipe.nerc.eval.Evaluate;
+import es.ehu.si.ixa.pipe.nerc.eval.NestedEvaluate;
+import es.ehu.si.ixa.pipe.nerc.formats.BinaryCorpusSampleStream;
+import es.ehu.si.ixa.pipe.nerc.features.WordFeatureCacheGenerator;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
+import es.ehu.si.ixa.pipe.nerc.train.AbstractTrainer;
+import es.ehu.si.ixa.pipe.nerc.train.DenseModel;
 import es.ehu.si.ixa.pipe.nerc.train.FixedTrainer;
 import es.ehu.si.ixa.pipe.nerc.train.InputOutputUtils;
+import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
 import es.ehu.si.ixa.pipe.nerc.train.NameModel;
+import es.ehu.si.ixa.pipe.nerc.train.NameModelCompressor;
 import es.ehu.si.ixa.pipe.nerc.train.Trainer;
 
 /**
@@ -89,11 +103,53 @@ public class CLI {
    * The parser that manages the evaluation sub-command.
    */
   private Subparser evalParser;
+  /**
+   * The parser that manages the corpus conversion sub-command.
+   */
+  private Subparser convertParser;
+  /**
+   * The parser that manages the model compression sub-command.
+   */
+  private Subparser compressParser;
 
   /**
    * Default beam size for decoding.
    */
   public static final int DEFAULT_BEAM_SIZE = 3;
+  /**
+   * Default ratio to the best hypothesis of the adaptive beam: off.
+   */
+  public static final double DEFAULT_BEAM_RATIO = 0;
+  /**
+   * Default decoder.
+   */
+  public static final String DEFAULT_DECODER = NameClassifier.BEAM_DECODER;
+  /**
+   * Default precision of the model parameters used for tagging: none, the
+   * OpenNLP model is used as it is, without a dense copy.
+   */
+  public static final String DEFAULT_MODEL_PRECISION = null;
+  /**
+   * Default number of threads for evaluation.
+   */
+  public static final int DEFAULT_EVAL_THREADS = 1;
+  /**
+   * Default number of corpus files parsed concurrently: one per processor.
+   */
+  public static final int DEFAULT_READ_THREADS = Runtime.getRuntime()
+      .availableProcessors();
+  /**
+   * Default maximum number of words of every token feature cache.
+   */
+  public static final int DEFAULT_WORD_FEATURE_CACHE_SIZE = 100000;
+  /**
+   * Default maximum number of tagged sentences cached: none.
+   */
+  public static final int DEFAULT_SENTENCE_CACHE_SIZE = 0;
+  /**
+   * Default output of the entities of several models: merged.
+   */
+  public static final String DEFAULT_MULTI_MODEL_OUTPUT = MultiModelNameFinder.MERGED;
   public static final String DEFAULT_EVALUATE_MODEL = "off";
   public static final String DEFAULT_NE_TYPES = "off";
   public static final String DEFAULT_FEATURES = "baseline";
@@ -113,6 +169,10 @@ public class CLI {
     loadTrainingParameters();
     evalParser = subParsers.addParser("eval").help("Evaluation CLI");
     loadEvalParameters();
+    convertParser = subParsers.addParser("convert").help("Corpus conversion CLI");
+    loadConvertParameters();
+    compressParser = subParsers.addParser("compress").help("Model compression CLI");
+    loadCompressParameters();
   }
 
   /**
@@ -150,11 +210,15 @@ public class CLI {
         eval();
       } else if (args[0].equals("train")) {
         train();
+      } else if (args[0].equals("convert")) {
+        convert();
+      } else if (args[0].equals("compress")) {
+        compress();
       }
     } catch (ArgumentParserException e) {
       argParser.handleError(e);
       System.out.println("Run java -jar target/ixa-pipe-nerc-" + version
-          + ".jar (tag|train|eval) -help for details");
+          + ".jar (tag|train|eval|convert|compress) -help for details");
       System.exit(1);
     }
   }
@@ -176,8 +240,16 @@ public class CLI {
         inputStream, "UTF-8"));
     BufferedWriter bwriter = new BufferedWriter(new OutputStreamWriter(
         outputStream, "UTF-8"));
+    AnnotateMetrics metrics = null;
+    if (parsedArguments.getBoolean("metrics")) {
+      metrics = new AnnotateMetrics();
+    }
     // read KAF document from inputstream
+    long start = AnnotateMetrics.start();
     KAFDocument kaf = KAFDocument.createFromStream(breader);
+    if (metrics != null) {
+      metrics.record(AnnotateMetrics.Stage.PARSE, start);
+    }
     // load properties parameters file
     String paramFile = parsedArguments.getString("params");
     TrainingParameters params = InputOutputUtils
@@ -200,7 +272,9 @@ public class CLI {
     newLp.setBeginTimestamp();
     Properties properties = setAnnotateProperties(lexer);
     Annotate annotator = new Annotate(properties, params);
+    annotator.setMetrics(metrics);
     annotator.annotateNEs(kaf);
+    start = AnnotateMetrics.start();
     String outputFormatOption = InputOutputUtils.getOutputFormat(params);
     String kafToString = null;
     if (outputFormatOption.equalsIgnoreCase("conll03")) {
@@ -214,6 +288,18 @@ public class CLI {
     bwriter.write(kafToString);
     bwriter.close();
     breader.close();
+    if (metrics != null) {
+      metrics.record(AnnotateMetrics.Stage.SERIALIZE, start);
+      System.err.println(metrics.report());
+      System.err.println(WordFeatureCacheGenerator.report());
+      CacheStats sentenceStats = annotator.getSentenceCacheStats();
+      if (sentenceStats != null) {
+        System.err.println(String.format(Locale.ENGLISH,
+            "sentence cache: hits: %d, misses: %d, hit rate: %.4f",
+            sentenceStats.hitCount(), sentenceStats.missCount(),
+            sentenceStats.hitRate()));
+      }
+    }
   }
 
   /**
@@ -275,7 +361,23 @@ public class CLI {
     String paramFile = parsedArguments.getString("params");
     TrainingParameters params = InputOutputUtils
         .loadTrainingParameters(paramFile);
-    if (parsedArguments.getString("prediction") == null) {
+    if (parsedArguments.getString("prediction") == null
+        && InputOutputUtils.getCorpusFormat(params).equalsIgnoreCase(
+            "germEvalNested2014")) {
+      NestedEvaluate evaluator = new NestedEvaluate(params);
+      if (parsedArguments.getString("evalReport") != null
+          && parsedArguments.getString("evalReport").equalsIgnoreCase("brief")) {
+        evaluator.evaluate();
+      } else {
+        evaluator.detailEvaluate();
+      }
+    } else if (parsedArguments.getString("prediction") == null
+        && parsedArguments.getString("evalReport") != null
+        && parsedArguments.getString("evalReport").equalsIgnoreCase(
+            "benchmark")) {
+      DecoderBenchmark benchmark = new DecoderBenchmark(params);
+      benchmark.benchmark();
+    } else if (parsedArguments.getString("prediction") == null) {
       Evaluate evaluator = new Evaluate(params);
       if (parsedArguments.getString("evalReport") != null) {
         if (parsedArguments.getString("evalReport").equalsIgnoreCase("brief")) {
@@ -292,7 +394,12 @@ public class CLI {
       }
     } else if (parsedArguments.getString("prediction") != null) {
       CorpusEvaluate corpusEvaluator = new CorpusEvaluate(predFile, params);
-      corpusEvaluator.evaluate();
+      if (parsedArguments.getString("evalReport") != null
+          && parsedArguments.getString("evalReport").equalsIgnoreCase("brief")) {
+        corpusEvaluator.evaluate();
+      } else {
+        corpusEvaluator.detailEvaluate();
+      }
     } else {
       System.err
           .println("Provide either a model or a predictionFile to perform evaluation!");
@@ -308,6 +415,8 @@ public class CLI {
     annotateParser.addArgument("--lexer").choices("numeric")
         .setDefault(DEFAULT_LEXER).required(false)
         .help("Use lexer rules for NERC tagging\n");
+    annotateParser.addArgument("--metrics").action(Arguments.storeTrue())
+        .help("Print the latency of every tagging stage and the throughput to stderr\n");
   }
 
   /**
@@ -330,7 +439,109 @@ public class CLI {
         .help(
             "Use this parameter to evaluate one prediction corpus against a reference corpus\n");
     evalParser.addArgument("--evalReport").required(false)
-        .choices("brief", "detailed", "error");
+        .choices("brief", "detailed", "error", "benchmark");
+  }
+
+  /**
+   * Pre-tokenise a corpus into the binary format, which can then be used with
+   * CorpusFormat=binary for training and evaluation.
+   * 
+   * @throws IOException
+   *           if the corpus can not be read or written
+   */
+  public final void convert() throws IOException {
+    String input = parsedArguments.getString("input");
+    String output = parsedArguments.getString("output");
+    ObjectStream<CorpusSample> samples = AbstractTrainer.getNameStream(input,
+        parsedArguments.getString("lang"),
+        parsedArguments.getString("corpusFormat"));
+    try {
+      BinaryCorpusSampleStream.write(samples, new File(output));
+    } finally {
+      samples.close();
+    }
+    System.out.println("Wrote binary corpus to " + output);
+  }
+
+  /**
+   * Create the parameters available for corpus conversion.
+   */
+  private void loadConvertParameters() {
+    convertParser.addArgument("-i", "--input").required(true)
+        .help("The corpus to convert\n");
+    convertParser.addArgument("-l", "--lang").required(true)
+        .help("The language of the corpus\n");
+    convertParser.addArgument("-f", "--corpusFormat").required(true)
+        .choices("conll02", "conll03", "germEvalOuter2014", "germEvalInner2014", "opennlp")
+        .help("The format of the corpus\n");
+    convertParser.addArgument("-o", "--output").required(true)
+        .help("The binary corpus to write\n");
+  }
+
+  /**
+   * Prune and quantise a trained model, reporting the F1 difference on the
+   * TestSet of the parameters file if one is given. In the dense format the
+   * parameters are stored with the precision given by the number of bits;
+   * quantised models are always stored in the dense format, as the OpenNLP
+   * format keeps every parameter as a double.
+   * 
+   * @throws IOException
+   *           if the model can not be read or the test set is not available
+   */
+  public final void compress() throws IOException {
+    String modelFile = parsedArguments.getString("model");
+    String output = parsedArguments.getString("output");
+    int bits = parsedArguments.getInt("bits");
+    String format = parsedArguments.getString("format");
+    if (format == null) {
+      format = bits > 0 ? "dense" : "opennlp";
+    } else if (bits > 0 && format.equals("opennlp")) {
+      System.err.println("Quantised models can only be stored with --format dense!");
+      System.exit(1);
+    }
+    NameModel model = new NameModel(new File(modelFile));
+    NameModelCompressor compressor = new NameModelCompressor(
+        parsedArguments.getDouble("threshold"), bits);
+    NameModel compressed = compressor.compress(model);
+    if (format.equals("dense")) {
+      String precision = bits == 8 ? DenseModel.INT8
+          : bits == 16 ? DenseModel.INT16 : DenseModel.DOUBLE;
+      compressed = compressed.toDenseFormat(precision);
+    }
+    InputOutputUtils.saveModel(compressed, output);
+    System.out.println(compressor.getStatistics());
+    System.out.println("Model size: " + new File(modelFile).length() + " -> "
+        + new File(output).length() + " bytes");
+    String paramFile = parsedArguments.getString("params");
+    if (paramFile != null) {
+      TrainingParameters params = InputOutputUtils
+          .loadTrainingParameters(paramFile);
+      double before = new Evaluate(params, model).getFMeasure().getFMeasure();
+      double after = new Evaluate(params, compressed).getFMeasure().getFMeasure();
+      System.out.println("F1: " + before + " -> " + after + " (delta "
+          + (after - before) + ")");
+    }
+  }
+
+  /**
+   * Create the parameters available for model compression.
+   */
+  private void loadCompressParameters() {
+    compressParser.addArgument("-m", "--model").required(true)
+        .help("The model to compress\n");
+    compressParser.addArgument("-o", "--output").required(true)
+        .help("The compressed model to write\n");
+    compressParser.addArgument("--threshold").type(Double.class)
+        .setDefault(0.0).required(false)
+        .help("Drop the parameters whose absolute value is below the threshold\n");
+    compressParser.addArgument("--bits").type(Integer.class).choices(0, 8, 16)
+        .setDefault(0).required(false)
+        .help("Quantise the parameters to 8 or 16 bits, 0 to keep them; quantised models are stored in the dense format\n");
+    compressParser.addArgument("--format").choices("opennlp", "dense")
+        .required(false)
+        .help("Store the model in the OpenNLP format or in the binary dense format, faster to load; defaults to dense if quantised, opennlp otherwise\n");
+    compressParser.addArgument("-p", "--params").required(false)
+        .help("Load a parameters file to report the F1 delta on its TestSet\n");
   }
 
   private Properties setAnnotateProperties(String ruleBasedOption) {
@@ -0,0 +1,294 @@
+/*
+ *Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.Span;
+import opennlp.tools.util.TrainingParameters;
+import es.ehu.si.ixa.pipe.nerc.features.PredicateFilter;
+import es.ehu.si.ixa.pipe.nerc.features.SharedFeatureCache;
+import es.ehu.si.ixa.pipe.nerc.train.FixedTrainer;
+import es.ehu.si.ixa.pipe.nerc.train.InputOutputUtils;
+import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
+import es.ehu.si.ixa.pipe.nerc.train.NameModel;
+
+/**
+ * Named Entity Recognition with several statistical models on the same
+ * sentences, e.g., a CoNLL and an OntoNotes model. Every model uses the
+ * features stored in it, and the feature families common to several models,
+ * such as the token, token shape, n-gram and cluster features, are generated
+ * once per sentence through a {@link SharedFeatureCache}. The entities of the
+ * models are either merged, dropping the overlapping ones, or kept separate,
+ * dropping only the overlapping entities of the same model. The nested output
+ * is the separate output of an outer and an inner model, such as those of
+ * GermEval 2014, keeping only the inner entities inside an outer entity.
+ *
+ * @author ragerri
+ */
+public class MultiModelNameFinder implements NameFinder {
+
+  public static final String MERGED = "merged";
+  public static final String SEPARATE = "separate";
+  public static final String NESTED = "nested";
+
+  /**
+   * The models, by file, shared by every instance of this finder.
+   */
+  private static ConcurrentHashMap<String, NameModel> nercModels =
+      new ConcurrentHashMap<String, NameModel>();
+  /**
+   * The name finder of every model.
+   */
+  private final List<NameClassifier> nameFinders = new ArrayList<NameClassifier>();
+  /**
+   * The features shared by the models.
+   */
+  private final SharedFeatureCache featureCache = new SharedFeatureCache();
+  /**
+   * The name factory.
+   */
+  private final NameFactory nameFactory;
+  /**
+   * True to keep the entities of every model separate.
+   */
+  private final boolean separate;
+  /**
+   * True if the second model finds the entities nested in those of the first.
+   */
+  private final boolean nested;
+  /**
+   * The spans found by every model in the last sentence.
+   */
+  private List<List<Span>> lastSpans = Collections.emptyList();
+
+  /**
+   * Construct a name finder for the TagModels of the parameters.
+   *
+   * @param params the parameters
+   * @param aNameFactory the name factory to construct Name objects
+   * @throws IOException if a model can not be loaded
+   */
+  public MultiModelNameFinder(final TrainingParameters params,
+      final NameFactory aNameFactory) throws IOException {
+    String[] models = InputOutputUtils.getTagModels(params);
+    if (models == null || models.length == 0) {
+      throw new IllegalArgumentException("No TagModels specified!");
+    }
+    String output = InputOutputUtils.getMultiModelOutput(params);
+    if (!MERGED.equals(output) && !SEPARATE.equals(output)
+        && !NESTED.equals(output)) {
+      throw new IllegalArgumentException("Unknown MultiModelOutput: " + output);
+    }
+    this.nested = NESTED.equals(output);
+    if (nested && models.length != 2) {
+      throw new IllegalArgumentException(
+          "The nested output requires an outer and an inner TagModels!");
+    }
+    this.separate = !MERGED.equals(output);
+    this.nameFactory = aNameFactory;
+    List<NameModel> nerModels = new ArrayList<NameModel>(models.length);
+    int[][] predicateHashes = new int[models.length][];
+    for (int i = 0; i < models.length; i++) {
+      nerModels.add(loadModel(models[i]));
+      predicateHashes[i] = nerModels.get(i).getPredicateHashes();
+    }
+    // the shared features are those of any of the models
+    PredicateFilter filter = new PredicateFilter(predicateHashes);
+    for (int i = 0; i < models.length; i++) {
+      String model = models[i];
+      NameModel nerModel = nerModels.get(i);
+      TrainingParameters featureParams = params;
+      try {
+        featureParams = nerModel.getFeatureParameters(params);
+      } catch (InvalidFormatException e) {
+        System.err.println("Could not read the features of " + model
+            + ", using the parameters file!");
+      }
+      FixedTrainer nameFinderTrainer = new FixedTrainer(featureParams);
+      nameFinders.add(new NameClassifier(nerModel, nameFinderTrainer
+          .createFeatureGenerator(featureParams, featureCache, filter), params));
+    }
+  }
+
+  /**
+   * Loads a model, shared by every instance of this finder.
+   *
+   * @param model the model file
+   * @return the model
+   * @throws IOException if the model can not be loaded
+   */
+  private static NameModel loadModel(final String model) throws IOException {
+    NameModel nerModel = nercModels.get(model);
+    if (nerModel == null) {
+      nerModel = new NameModel(new File(model));
+      NameModel previous = nercModels.putIfAbsent(model, nerModel);
+      if (previous != null) {
+        nerModel = previous;
+      }
+    }
+    return nerModel;
+  }
+
+  public final List<Name> getNames(final String[] tokens) {
+    Span[] neSpans = dropOverlappingSpans(nercToSpans(tokens));
+    return getNamesFromSpans(neSpans, tokens);
+  }
+
+  /**
+   * Tags a sentence with every model, clearing the adaptive data afterwards.
+   *
+   * @param tokens an array of tokenized text
+   * @return the spans of the Named Entities found by every model, in the
+   *         order of the models
+   */
+  public final List<List<Span>> nercToSpansByModel(final String[] tokens) {
+    List<List<Span>> spans = findByModel(tokens);
+    clearAdaptiveData();
+    return spans;
+  }
+
+  /**
+   * Tags a sentence with every model, keeping the adaptive data of the
+   * previous sentences, as when evaluating a document.
+   *
+   * @param tokens an array of tokenized text
+   * @return the spans of the Named Entities found by every model, in the
+   *         order of the models
+   */
+  public final List<List<Span>> findByModel(final String[] tokens) {
+    List<List<Span>> spans = new ArrayList<List<Span>>(nameFinders.size());
+    for (NameClassifier nameFinder : nameFinders) {
+      spans.add(Arrays.asList(nameFinder.find(tokens)));
+    }
+    lastSpans = spans;
+    return spans;
+  }
+
+  /**
+   * Tags a sentence with every model.
+   *
+   * @param tokens an array of tokenized text
+   * @return the spans of the Named Entities found by all the models
+   */
+  public final List<Span> nercToSpans(final String[] tokens) {
+    List<Span> allSpans = new ArrayList<Span>();
+    for (List<Span> modelSpans : nercToSpansByModel(tokens)) {
+      allSpans.addAll(modelSpans);
+    }
+    return allSpans;
+  }
+
+  /**
+   * Drops the overlapping spans among the spans of the last sentence and the
+   * spans found by other name finders. If the entities of the models are kept
+   * separate, only the overlapping spans of the same model, or of the other
+   * name finders, are dropped. In the nested output the inner spans outside
+   * every outer span are dropped too.
+   *
+   * @param spans the spans of the last sentence
+   * @return the spans without overlaps
+   */
+  public final Span[] dropOverlappingSpans(final List<Span> spans) {
+    if (!separate) {
+      return NameClassifier.dropOverlappingSpans(spans.toArray(new Span[spans.size()]));
+    }
+    List<List<Span>> groups = new ArrayList<List<Span>>();
+    for (int m = 0; m <= lastSpans.size(); m++) {
+      groups.add(new ArrayList<Span>());
+    }
+    for (Span span : spans) {
+      int group = lastSpans.size();
+      for (int m = 0; m < lastSpans.size(); m++) {
+        if (lastSpans.get(m).contains(span)) {
+          group = m;
+          break;
+        }
+      }
+      groups.get(group).add(span);
+    }
+    List<Span[]> kept = new ArrayList<Span[]>(groups.size());
+    for (List<Span> group : groups) {
+      kept.add(NameClassifier.dropOverlappingSpans(group
+          .toArray(new Span[group.size()])));
+    }
+    if (nested && lastSpans.size() == 2) {
+      kept.set(1, dropUnnestedSpans(kept.get(0), kept.get(1)));
+    }
+    List<Span> result = new ArrayList<Span>();
+    for (Span[] groupSpans : kept) {
+      result.addAll(Arrays.asList(groupSpans));
+    }
+    Collections.sort(result);
+    return result.toArray(new Span[result.size()]);
+  }
+
+  /**
+   * Keeps the inner spans contained in an outer span.
+   *
+   * @param outerSpans the outer spans
+   * @param innerSpans the inner spans
+   * @return the nested inner spans
+   */
+  private static Span[] dropUnnestedSpans(final Span[] outerSpans,
+      final Span[] innerSpans) {
+    List<Span> nestedSpans = new ArrayList<Span>(innerSpans.length);
+    for (Span innerSpan : innerSpans) {
+      for (Span outerSpan : outerSpans) {
+        if (outerSpan.contains(innerSpan)) {
+          nestedSpans.add(innerSpan);
+          break;
+        }
+      }
+    }
+    return nestedSpans.toArray(new Span[nestedSpans.size()]);
+  }
+
+  public final List<Name> getNamesFromSpans(final Span[] neSpans,
+      final String[] tokens) {
+    List<Name> names = new ArrayList<Name>();
+    for (Span neSpan : neSpans) {
+      String nameString = StringUtils.getStringFromSpan(neSpan, tokens);
+      String neType = neSpan.getType();
+      Name name = nameFactory.createName(nameString, neType, neSpan);
+      names.add(name);
+    }
+    return names;
+  }
+
+  public final void clearAdaptiveData() {
+    for (NameClassifier nameFinder : nameFinders) {
+      nameFinder.clearAdaptiveData();
+    }
+  }
+
+  /**
+   * Retrieves the cache of the features shared by the models.
+   *
+   * @return the cache, with its hit and miss counts
+   */
+  public final SharedFeatureCache getFeatureCache() {
+    return featureCache;
+  }
+}
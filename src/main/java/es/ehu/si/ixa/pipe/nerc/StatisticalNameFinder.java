@@ -25,6 +25,7 @@ import java.util.List;
 import java.util.Properties;
 import java.util.concurrent.ConcurrentHashMap;
 
+import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.Span;
 import opennlp.tools.util.TrainingParameters;
 import es.ehu.si.ixa.pipe.nerc.train.FixedTrainer;
@@ -70,11 +71,12 @@ public class StatisticalNameFinder implements NameFinder {
   public StatisticalNameFinder(final Properties props, final TrainingParameters params) {
     String lang = InputOutputUtils.getLanguage(params);
     String model = InputOutputUtils.getModel(params);
-    Integer beamsize = InputOutputUtils.getBeamsize(params);
     NameModel nerModel = loadModel(lang, model);
-    nameFinderTrainer = new FixedTrainer(params);
-    nameFinder = new NameClassifier(nerModel,
-        nameFinderTrainer.createFeatureGenerator(params), beamsize);
+    TrainingParameters featureParams = getFeatureParameters(nerModel, params);
+    FixedTrainer fixedTrainer = new FixedTrainer(featureParams);
+    nameFinderTrainer = fixedTrainer;
+    nameFinder = new NameClassifier(nerModel, fixedTrainer.createFeatureGenerator(
+        featureParams, null, nerModel.getPredicateFilter()), params);
   }
 
   /**
@@ -90,12 +92,13 @@ public class StatisticalNameFinder implements NameFinder {
 
     String lang = InputOutputUtils.getLanguage(params);
     String model = InputOutputUtils.getModel(params);
-    Integer beamsize = InputOutputUtils.getBeamsize(params);
     this.nameFactory = aNameFactory;
     NameModel nerModel = loadModel(lang, model);
-    nameFinderTrainer = new FixedTrainer(params);
-    nameFinder = new NameClassifier(nerModel,
-        nameFinderTrainer.createFeatureGenerator(params), beamsize);
+    TrainingParameters featureParams = getFeatureParameters(nerModel, params);
+    FixedTrainer fixedTrainer = new FixedTrainer(featureParams);
+    nameFinderTrainer = fixedTrainer;
+    nameFinder = new NameClassifier(nerModel, fixedTrainer.createFeatureGenerator(
+        featureParams, null, nerModel.getPredicateFilter()), params);
   }
 
   
@@ -172,6 +175,24 @@ public class StatisticalNameFinder implements NameFinder {
     nameFinder.clearAdaptiveData();
   }
 
+  /**
+   * Gets the parameters to create the features of a model: the features
+   * stored in the model, if any, otherwise the ones in the parameters.
+   *
+   * @param nerModel the model
+   * @param params the parameters
+   * @return the parameters to create the feature generators
+   */
+  private TrainingParameters getFeatureParameters(final NameModel nerModel,
+      final TrainingParameters params) {
+    try {
+      return nerModel.getFeatureParameters(params);
+    } catch (InvalidFormatException e) {
+      System.err.println("Could not read the features of the model, using the parameters file!");
+      return params;
+    }
+  }
+
   /**
    * Loads statically the probabilistic model. Every instance of this finder
    * will share the same model.
@@ -1,10 +1,10 @@
 package es.ehu.si.ixa.pipe.nerc.eval;
 
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.Span;
 import opennlp.tools.util.TrainingParameters;
 import opennlp.tools.util.eval.FMeasure;
 import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
@@ -48,8 +48,11 @@ public class CorpusEvaluate {
     String referenceData = InputOutputUtils.getDataSet("TestSet", params);
     String lang = InputOutputUtils.getLanguage(params);
     String corpusFormat = InputOutputUtils.getCorpusFormat(params);
-    referenceSamples = AbstractTrainer.getNameStream(referenceData, lang, corpusFormat);
-    predictionSamples = AbstractTrainer.getNameStream(predictionData, lang, corpusFormat);
+    int readThreads = InputOutputUtils.getReadThreads(params);
+    referenceSamples = AbstractTrainer.getNameStream(referenceData, lang, corpusFormat,
+        readThreads);
+    predictionSamples = AbstractTrainer.getNameStream(predictionData, lang, corpusFormat,
+        readThreads);
     if (params.getSettings().get("Types") != null) {
       String neTypes = params.getSettings().get("Types");
       String[] neTypesArray = neTypes.split(",");
@@ -58,27 +61,66 @@ public class CorpusEvaluate {
     }
   }
   
-  public List<CorpusSample> readSamplesToList(ObjectStream<CorpusSample> samples) throws IOException {
-    CorpusSample sample;
-    List<CorpusSample> nameSampleList = new ArrayList<CorpusSample>();
-    while ((sample = samples.read()) != null) {
-      nameSampleList.add(sample);
-    }
-    return nameSampleList;
-  }
-
   /**
    * Evaluate and print precision, recall and F measure.
    * @throws IOException if test corpus not loaded
    */
   public final void evaluate() throws IOException {
-    List<CorpusSample> refList = readSamplesToList(referenceSamples);
-    List<CorpusSample> predList = readSamplesToList(predictionSamples);
-    for (int i = 0; i < refList.size(); ++i) {
-      fmeasure.updateScores(refList.get(i).getNames(), predList.get(i).getNames());
-    }
+    evaluate(new NameFinderEvaluationMonitor[0]);
     System.out.println(fmeasure.toString());
   }
-  
+
+  /**
+   * Evaluate and print the precision, recall and F measure per named entity
+   * class and the confusion matrix of the named entity classes.
+   * @throws IOException if test corpus not loaded
+   */
+  public final void detailEvaluate() throws IOException {
+    NameFinderDetailedFMeasureListener detailedFListener = new NameFinderDetailedFMeasureListener();
+    NameFinderConfusionMatrixListener confusionMatrixListener = new NameFinderConfusionMatrixListener();
+    evaluate(new NameFinderEvaluationMonitor[] { detailedFListener, confusionMatrixListener });
+    System.out.println(detailedFListener.toString());
+    System.out.println(confusionMatrixListener.toString());
+  }
+
+  /**
+   * Reads the reference and prediction corpora in lockstep, one sentence at a
+   * time, checking that both contain the same sentences.
+   *
+   * @param listeners the listeners to notify for every sentence
+   * @throws IOException if the corpora can not be read or are not aligned
+   */
+  private void evaluate(NameFinderEvaluationMonitor[] listeners) throws IOException {
+    CorpusSample reference;
+    CorpusSample prediction;
+    int sentence = 0;
+    while ((reference = referenceSamples.read()) != null) {
+      sentence++;
+      prediction = predictionSamples.read();
+      if (prediction == null) {
+        throw new IOException("Prediction corpus ends at sentence " + sentence
+            + " but the reference corpus does not!");
+      }
+      if (!Arrays.equals(reference.getSentence(), prediction.getSentence())) {
+        throw new IOException("Sentence " + sentence
+            + " differs in the reference and prediction corpora!");
+      }
+      Span[] references = reference.getNames();
+      Span[] predictions = prediction.getNames();
+      fmeasure.updateScores(references, predictions);
+      boolean correct = Arrays.equals(references, predictions);
+      for (NameFinderEvaluationMonitor listener : listeners) {
+        if (correct) {
+          listener.correctlyClassified(reference, prediction);
+        } else {
+          listener.missclassified(reference, prediction);
+        }
+      }
+    }
+    if (predictionSamples.read() != null) {
+      throw new IOException("Reference corpus ends at sentence " + sentence
+          + " but the prediction corpus does not!");
+    }
+  }
 
 }
@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.eval;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import opennlp.tools.util.CollectionObjectStream;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.TrainingParameters;
+import opennlp.tools.util.eval.FMeasure;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSampleTypeFilter;
+import es.ehu.si.ixa.pipe.nerc.train.AbstractTrainer;
+import es.ehu.si.ixa.pipe.nerc.train.FixedTrainer;
+import es.ehu.si.ixa.pipe.nerc.train.InputOutputUtils;
+import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
+import es.ehu.si.ixa.pipe.nerc.train.NameModel;
+
+/**
+ * Compares the speed and F measure of the greedy decoder with those of the
+ * beam decoder with the default beam size on the test set of the
+ * parameters. The model is loaded and the test set read into memory once,
+ * the name finders are built before timing, and the test set is tagged once
+ * before timing, so only the tagging of a warm JVM is timed.
+ *
+ * @author ragerri
+ */
+public class DecoderBenchmark {
+
+  /**
+   * The parameters with the test set and the model.
+   */
+  private final TrainingParameters params;
+  /**
+   * The model to be evaluated.
+   */
+  private final NameModel nercModel;
+  /**
+   * The parameters used to create the feature generators.
+   */
+  private final TrainingParameters featureParams;
+  /**
+   * The reference corpus, in memory.
+   */
+  private final List<CorpusSample> testSamples = new ArrayList<CorpusSample>();
+
+  /**
+   * The F measure and tagging time of a decoder.
+   */
+  private static class Result {
+    private final FMeasure fmeasure;
+    private final long nanos;
+
+    private Result(FMeasure fmeasure, long nanos) {
+      this.fmeasure = fmeasure;
+      this.nanos = nanos;
+    }
+  }
+
+  /**
+   * Construct a benchmark of the model of the parameters.
+   *
+   * @param params the parameters
+   * @throws IOException if the model or the test set can not be read
+   */
+  public DecoderBenchmark(final TrainingParameters params) throws IOException {
+    this.params = params;
+    this.nercModel = new NameModel(new File(InputOutputUtils.getModel(params)));
+    this.featureParams = nercModel.getFeatureParameters(params);
+
+    String testSet = InputOutputUtils.getDataSet("TestSet", params);
+    ObjectStream<CorpusSample> samples = AbstractTrainer.getNameStream(testSet,
+        InputOutputUtils.getLanguage(params),
+        InputOutputUtils.getCorpusFormat(params),
+        InputOutputUtils.getReadThreads(params));
+    String[] neTypes = InputOutputUtils.getNeTypes(params);
+    if (neTypes != null) {
+      samples = new CorpusSampleTypeFilter(neTypes, samples);
+    }
+    try {
+      CorpusSample sample;
+      while ((sample = samples.read()) != null) {
+        testSamples.add(sample);
+      }
+    } finally {
+      samples.close();
+    }
+  }
+
+  /**
+   * Evaluates the test set with the beam and the greedy decoders and prints
+   * the F measure and time of each.
+   */
+  public final void benchmark() {
+    String beamSize = Integer.toString(NameClassifier.DEFAULT_BEAM_SIZE);
+    run(NameClassifier.BEAM_DECODER, beamSize);
+    Result beam = run(NameClassifier.BEAM_DECODER, beamSize);
+    Result greedy = run(NameClassifier.GREEDY_DECODER, "1");
+
+    System.out.println("decoder\tF1\ttime ms");
+    print("beam " + beamSize, beam);
+    print(NameClassifier.GREEDY_DECODER, greedy);
+    if (greedy.nanos > 0) {
+      System.out.println(String.format(Locale.ENGLISH,
+          "greedy speedup: %.2fx, F1 difference: %.4f", (double) beam.nanos
+              / greedy.nanos, greedy.fmeasure.getFMeasure()
+              - beam.fmeasure.getFMeasure()));
+    }
+  }
+
+  /**
+   * Tags the test set with a decoder, timing only the tagging.
+   */
+  private Result run(final String decoder, final String beamSize) {
+    TrainingParameters runParams = new TrainingParameters();
+    for (Map.Entry<String, String> entry : params.getSettings().entrySet()) {
+      runParams.put(entry.getKey(), entry.getValue());
+    }
+    runParams.put("Decoder", decoder);
+    runParams.put("Beamsize", beamSize);
+    FixedTrainer nameFinderTrainer = new FixedTrainer(featureParams);
+    NameClassifier nameFinder = new NameClassifier(nercModel,
+        nameFinderTrainer.createFeatureGenerator(featureParams, null,
+            nercModel.getPredicateFilter()), runParams);
+    NameFinderEvaluator evaluator = new NameFinderEvaluator(nameFinder);
+    ObjectStream<CorpusSample> samples = new CollectionObjectStream<CorpusSample>(
+        testSamples);
+    long start = System.nanoTime();
+    try {
+      evaluator.evaluate(samples);
+    } catch (IOException e) {
+      // the samples are read from memory
+      throw new IllegalStateException(e);
+    }
+    long nanos = System.nanoTime() - start;
+    return new Result(evaluator.getFMeasure(), nanos);
+  }
+
+  private static void print(final String decoder, final Result result) {
+    System.out.println(String.format(Locale.ENGLISH, "%s\t%.4f\t%.1f",
+        decoder, result.fmeasure.getFMeasure(), result.nanos / 1e6));
+  }
+
+}
@@ -3,19 +3,21 @@ package es.ehu.si.ixa.pipe.nerc.eval;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.LinkedList;
 import java.util.List;
 
 import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.TrainingParameters;
 import opennlp.tools.util.eval.EvaluationMonitor;
+import opennlp.tools.util.eval.FMeasure;
+import es.ehu.si.ixa.pipe.nerc.features.AdaptiveFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
 import es.ehu.si.ixa.pipe.nerc.formats.CorpusSampleTypeFilter;
 import es.ehu.si.ixa.pipe.nerc.train.AbstractTrainer;
 import es.ehu.si.ixa.pipe.nerc.train.FixedTrainer;
 import es.ehu.si.ixa.pipe.nerc.train.InputOutputUtils;
 import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
-import es.ehu.si.ixa.pipe.nerc.train.Trainer;
 import es.ehu.si.ixa.pipe.nerc.train.NameModel;
 
 /**
@@ -31,17 +33,29 @@ public class Evaluate {
    */
   private ObjectStream<CorpusSample> testSamples;
   /**
-   * Static instance of {@link TokenNameFinderModel}.
+   * The model to be evaluated.
    */
-  private static NameModel nercModel;
+  private NameModel nercModel;
   /**
    * The name finder trainer to use for appropriate features.
    */
-  private Trainer nameFinderTrainer;
+  private FixedTrainer nameFinderTrainer;
   /**
    * An instance of the probabilistic {@link NameFinderME}.
    */
   private NameClassifier nameFinder;
+  /**
+   * The parameters used to create the feature generators.
+   */
+  private TrainingParameters featureParams;
+  /**
+   * The parameters used to create the name finders.
+   */
+  private TrainingParameters params;
+  /**
+   * The number of threads used to tag the test corpus.
+   */
+  private int evalThreads;
  
   /**
    * Construct an evaluator.
@@ -55,22 +69,36 @@ public class Evaluate {
    * @throws IOException if input data not available
    */
   public Evaluate(final TrainingParameters params) throws IOException {
-    
+    this(params, null);
+  }
+
+  /**
+   * Construct an evaluator of an already loaded model.
+   *
+   * @param params the parameters with the test set and the features
+   * @param aModel the model to be evaluated, or null to load the model of the parameters
+   * @throws IOException if input data not available
+   */
+  public Evaluate(final TrainingParameters params, final NameModel aModel) throws IOException {
+
     String testSet = InputOutputUtils.getDataSet("TestSet", params);
-    String model = InputOutputUtils.getModel(params);
     String lang = InputOutputUtils.getLanguage(params);
     String corpusFormat = InputOutputUtils.getCorpusFormat(params);
-    Integer beamsize = InputOutputUtils.getBeamsize(params);
+    this.params = params;
+    this.evalThreads = InputOutputUtils.getEvalThreads(params);
     
-    testSamples = AbstractTrainer.getNameStream(testSet, lang, corpusFormat);
+    testSamples = AbstractTrainer.getNameStream(testSet, lang, corpusFormat,
+        InputOutputUtils.getReadThreads(params));
     if (params.getSettings().get("Types") != null) {
       String neTypes = params.getSettings().get("Types");
       String[] neTypesArray = neTypes.split(",");
       testSamples = new CorpusSampleTypeFilter(neTypesArray, testSamples);
     }
+    nercModel = aModel;
     InputStream trainedModelInputStream = null;
     try {
       if (nercModel == null) {
+        String model = InputOutputUtils.getModel(params);
         trainedModelInputStream = new FileInputStream(model);
         nercModel = new NameModel(trainedModelInputStream);
       }
@@ -85,8 +113,18 @@ public class Evaluate {
         }
       }
     }
-    nameFinderTrainer = new FixedTrainer(params);
-    nameFinder = new NameClassifier(nercModel, nameFinderTrainer.createFeatureGenerator(params), beamsize);
+    featureParams = nercModel.getFeatureParameters(params);
+    nameFinderTrainer = new FixedTrainer(featureParams);
+    nameFinder = new NameClassifier(nercModel, createFeatureGenerator(), params);
+  }
+
+  /**
+   * Creates a feature generator for the model, skipping the features the
+   * model does not have.
+   */
+  private AdaptiveFeatureGenerator createFeatureGenerator() {
+    return nameFinderTrainer.createFeatureGenerator(featureParams, null,
+        nercModel.getPredicateFilter());
   }
 
   /**
@@ -94,9 +132,15 @@ public class Evaluate {
    * @throws IOException if test corpus not loaded
    */
   public final void evaluate() throws IOException {
-    NameFinderEvaluator evaluator = new NameFinderEvaluator(nameFinder);
-    evaluator.evaluate(testSamples);
-    System.out.println(evaluator.getFMeasure());
+    System.out.println(evaluate(new NameFinderEvaluationMonitor[0]));
+  }
+  /**
+   * Evaluate and return the precision, recall and F measure.
+   * @return the F measure
+   * @throws IOException if test corpus not loaded
+   */
+  public final FMeasure getFMeasure() throws IOException {
+    return evaluate(new NameFinderEvaluationMonitor[0]);
   }
   /**
    * Evaluate and print the precision, recall and F measure per
@@ -108,9 +152,7 @@ public class Evaluate {
     List<EvaluationMonitor<CorpusSample>> listeners = new LinkedList<EvaluationMonitor<CorpusSample>>();
     NameFinderDetailedFMeasureListener detailedFListener = new NameFinderDetailedFMeasureListener();
     listeners.add(detailedFListener);
-    NameFinderEvaluator evaluator = new NameFinderEvaluator(nameFinder,
-        listeners.toArray(new NameFinderEvaluationMonitor[listeners.size()]));
-    evaluator.evaluate(testSamples);
+    evaluate(listeners.toArray(new NameFinderEvaluationMonitor[listeners.size()]));
     System.out.println(detailedFListener.toString());
   }
   /**
@@ -120,10 +162,32 @@ public class Evaluate {
   public final void evalError() throws IOException {
     List<EvaluationMonitor<CorpusSample>> listeners = new LinkedList<EvaluationMonitor<CorpusSample>>();
     listeners.add(new NameEvaluationErrorListener());
-    NameFinderEvaluator evaluator = new NameFinderEvaluator(nameFinder,
-        listeners.toArray(new NameFinderEvaluationMonitor[listeners.size()]));
-    evaluator.evaluate(testSamples);
-    System.out.println(evaluator.getFMeasure());
+    System.out.println(evaluate(listeners.toArray(new NameFinderEvaluationMonitor[listeners.size()])));
+  }
+
+  /**
+   * Evaluate the test corpus, using as many threads as specified by the
+   * EvalThreads parameter.
+   *
+   * @param listeners the evaluation listeners
+   * @return the F measure
+   * @throws IOException if test corpus not loaded
+   */
+  private FMeasure evaluate(NameFinderEvaluationMonitor[] listeners) throws IOException {
+    if (evalThreads > 1) {
+      List<NameClassifier> nameFinders = new ArrayList<NameClassifier>(evalThreads);
+      nameFinders.add(nameFinder);
+      for (int i = 1; i < evalThreads; i++) {
+        nameFinders.add(new NameClassifier(nercModel, createFeatureGenerator(), params));
+      }
+      NameFinderParallelEvaluator evaluator = new NameFinderParallelEvaluator(nameFinders, listeners);
+      evaluator.evaluate(testSamples);
+      return evaluator.getFMeasure();
+    } else {
+      NameFinderEvaluator evaluator = new NameFinderEvaluator(nameFinder, listeners);
+      evaluator.evaluate(testSamples);
+      return evaluator.getFMeasure();
+    }
   }
 
 }
@@ -0,0 +1,150 @@
+/*
+ * Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.eval;
+
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import opennlp.tools.util.Span;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
+
+/**
+ * Builds a confusion matrix of named entity types. A reference and a
+ * predicted name with the same boundaries are counted in the cell of their
+ * types; a name without counterpart is counted against the {@code O} (no
+ * entity) row or column.
+ *
+ * @author ragerri
+ */
+public class NameFinderConfusionMatrixListener implements
+    NameFinderEvaluationMonitor {
+
+  /**
+   * The label used for tokens which are not part of a name.
+   */
+  public static final String OUTSIDE = "O";
+
+  /**
+   * Counts indexed by reference type and predicted type.
+   */
+  private final Map<String, Map<String, Integer>> matrix = new HashMap<String, Map<String, Integer>>();
+  private final Set<String> types = new TreeSet<String>();
+
+  public void correctlyClassified(CorpusSample reference, CorpusSample prediction) {
+    update(reference.getNames(), prediction.getNames());
+  }
+
+  public void missclassified(CorpusSample reference, CorpusSample prediction) {
+    update(reference.getNames(), prediction.getNames());
+  }
+
+  private void update(Span[] references, Span[] predictions) {
+    boolean[] matched = new boolean[predictions.length];
+    for (Span reference : references) {
+      String predictedType = OUTSIDE;
+      for (int i = 0; i < predictions.length; i++) {
+        if (!matched[i] && reference.getStart() == predictions[i].getStart()
+            && reference.getEnd() == predictions[i].getEnd()) {
+          matched[i] = true;
+          predictedType = getType(predictions[i]);
+          break;
+        }
+      }
+      increment(getType(reference), predictedType);
+    }
+    for (int i = 0; i < predictions.length; i++) {
+      if (!matched[i]) {
+        increment(OUTSIDE, getType(predictions[i]));
+      }
+    }
+  }
+
+  private static String getType(Span span) {
+    return span.getType() == null ? "default" : span.getType();
+  }
+
+  private void increment(String referenceType, String predictedType) {
+    if (!OUTSIDE.equals(referenceType)) {
+      types.add(referenceType);
+    }
+    if (!OUTSIDE.equals(predictedType)) {
+      types.add(predictedType);
+    }
+    Map<String, Integer> row = matrix.get(referenceType);
+    if (row == null) {
+      row = new HashMap<String, Integer>();
+      matrix.put(referenceType, row);
+    }
+    Integer count = row.get(predictedType);
+    row.put(predictedType, count == null ? 1 : count + 1);
+  }
+
+  /**
+   * Get the number of reference names of a type predicted with another type.
+   *
+   * @param referenceType the reference type, or {@link #OUTSIDE}
+   * @param predictedType the predicted type, or {@link #OUTSIDE}
+   * @return the count
+   */
+  public int getCount(String referenceType, String predictedType) {
+    Map<String, Integer> row = matrix.get(referenceType);
+    if (row == null) {
+      return 0;
+    }
+    Integer count = row.get(predictedType);
+    return count == null ? 0 : count;
+  }
+
+  /**
+   * Prints the matrix with the reference types as rows and the predicted
+   * types as columns.
+   */
+  @Override
+  public String toString() {
+    String[] labels = types.toArray(new String[types.size() + 1]);
+    labels[labels.length - 1] = OUTSIDE;
+    int width = OUTSIDE.length();
+    for (String label : labels) {
+      width = Math.max(width, label.length());
+    }
+    for (String row : labels) {
+      for (String column : labels) {
+        width = Math.max(width, Integer.toString(getCount(row, column)).length());
+      }
+    }
+    String cell = "%" + (width + 2) + "s";
+    StringBuilder sb = new StringBuilder();
+    sb.append("Confusion matrix (rows: reference, columns: prediction)\n");
+    sb.append(String.format(Locale.ROOT, cell, ""));
+    for (String column : labels) {
+      sb.append(String.format(Locale.ROOT, cell, column));
+    }
+    sb.append("\n");
+    for (String row : labels) {
+      sb.append(String.format(Locale.ROOT, cell, row));
+      for (String column : labels) {
+        sb.append(String.format(Locale.ROOT, cell, getCount(row, column)));
+      }
+      sb.append("\n");
+    }
+    return sb.toString();
+  }
+
+}
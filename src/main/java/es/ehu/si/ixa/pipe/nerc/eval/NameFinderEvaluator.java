@@ -53,15 +53,20 @@ public class NameFinderEvaluator extends Evaluator<CorpusSample> {
     // OPENNLP-396 When evaluating with a file in the old format
     // the type of the span is null, but must be set to default to match
     // the output of the name finder.
+    // The names of the sample are shared, so they are copied before
+    // replacing any of them.
     for (int i = 0; i < references.length; i++) {
       if (references[i].getType() == null) {
+        if (references == reference.getNames()) {
+          references = references.clone();
+        }
         references[i] = new Span(references[i].getStart(), references[i].getEnd(), "default");
       }
     }
     
     fmeasure.updateScores(references, predictedNames);
     
-    return new CorpusSample(reference.getSentence(), predictedNames, reference.isClearAdaptiveDataSet());
+    return reference.withNames(predictedNames);
   }
   
   public FMeasure getFMeasure() {
@@ -0,0 +1,233 @@
+/*
+ * Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.eval;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.eval.Evaluator;
+import opennlp.tools.util.eval.FMeasure;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
+import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
+
+/**
+ * Evaluates a pool of {@link NameClassifier}s concurrently.
+ *
+ * The test corpus is partitioned into documents at the samples where
+ * {@link CorpusSample#isClearAdaptiveDataSet()} is true. Each document is
+ * tagged by one of the classifiers of the pool, which are not shared between
+ * threads because the feature generators keep adaptive data and caches. The
+ * predictions are merged back in corpus order, so the {@link FMeasure} and
+ * every {@link NameFinderEvaluationMonitor} see exactly the same sequence of
+ * samples as with the sequential {@link NameFinderEvaluator}.
+ *
+ * @author ragerri
+ */
+public class NameFinderParallelEvaluator extends Evaluator<CorpusSample> {
+
+  /**
+   * The number of documents per thread waiting to be merged before the reader
+   * stops queueing new ones.
+   */
+  private static final int PENDING_DOCUMENTS_PER_THREAD = 4;
+
+  private FMeasure fmeasure = new FMeasure();
+  /**
+   * The workers not currently tagging a document.
+   */
+  private final BlockingQueue<Worker> idleWorkers;
+  /**
+   * All the workers, to merge their scores at the end.
+   */
+  private final List<Worker> workers;
+  /**
+   * The prediction for the reference sample being merged.
+   */
+  private CorpusSample currentPrediction;
+
+  /**
+   * Initializes the current instance with one {@link NameClassifier} per
+   * thread.
+   *
+   * @param nameFinders the classifiers, one per evaluation thread
+   * @param listeners evaluation sample listeners
+   */
+  public NameFinderParallelEvaluator(List<NameClassifier> nameFinders,
+      NameFinderEvaluationMonitor... listeners) {
+    super(listeners);
+    if (nameFinders.isEmpty()) {
+      throw new IllegalArgumentException(
+          "At least one name finder is required for evaluation!");
+    }
+    this.workers = new ArrayList<Worker>(nameFinders.size());
+    this.idleWorkers = new LinkedBlockingQueue<Worker>();
+    for (NameClassifier nameFinder : nameFinders) {
+      Worker worker = new Worker(nameFinder);
+      workers.add(worker);
+      idleWorkers.add(worker);
+    }
+  }
+
+  /**
+   * Returns the prediction computed by the workers for the reference
+   * currently being merged.
+   */
+  @Override
+  protected CorpusSample processSample(CorpusSample reference) {
+    return currentPrediction;
+  }
+
+  /**
+   * Reads the samples, tags every document concurrently and merges the
+   * results in corpus order.
+   *
+   * @param samples the reference samples
+   * @throws IOException if the samples can not be read
+   */
+  @Override
+  public void evaluate(ObjectStream<CorpusSample> samples) throws IOException {
+    ExecutorService executor = Executors.newFixedThreadPool(workers.size());
+    LinkedList<Document> pending = new LinkedList<Document>();
+    int maxPending = workers.size() * PENDING_DOCUMENTS_PER_THREAD;
+    try {
+      List<CorpusSample> references = new ArrayList<CorpusSample>();
+      CorpusSample sample;
+      while ((sample = samples.read()) != null) {
+        if (sample.isClearAdaptiveDataSet() && !references.isEmpty()) {
+          pending.add(submit(executor, references));
+          references = new ArrayList<CorpusSample>();
+          if (pending.size() >= maxPending) {
+            merge(pending.removeFirst());
+          }
+        }
+        references.add(sample);
+      }
+      if (!references.isEmpty()) {
+        pending.add(submit(executor, references));
+      }
+      while (!pending.isEmpty()) {
+        merge(pending.removeFirst());
+      }
+    } finally {
+      executor.shutdownNow();
+    }
+    for (Worker worker : workers) {
+      fmeasure.mergeInto(worker.evaluator.getFMeasure());
+    }
+  }
+
+  private Document submit(ExecutorService executor,
+      final List<CorpusSample> references) {
+    Future<List<CorpusSample>> predictions = executor
+        .submit(new Callable<List<CorpusSample>>() {
+          public List<CorpusSample> call() throws InterruptedException {
+            Worker worker = idleWorkers.take();
+            try {
+              return worker.tag(references);
+            } finally {
+              idleWorkers.add(worker);
+            }
+          }
+        });
+    return new Document(references, predictions);
+  }
+
+  /**
+   * Notifies the listeners about every sample of the document, in order.
+   *
+   * @param document the document to merge
+   * @throws IOException if the document could not be tagged
+   */
+  private void merge(Document document) throws IOException {
+    List<CorpusSample> predictions;
+    try {
+      predictions = document.predictions.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("Interrupted while evaluating!", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IOException("Evaluation failed!", e.getCause());
+    }
+    for (int i = 0; i < predictions.size(); i++) {
+      currentPrediction = predictions.get(i);
+      evaluateSample(document.references.get(i));
+    }
+    currentPrediction = null;
+  }
+
+  public FMeasure getFMeasure() {
+    return fmeasure;
+  }
+
+  /**
+   * A document read from the corpus and its pending predictions.
+   */
+  private static class Document {
+
+    private final List<CorpusSample> references;
+    private final Future<List<CorpusSample>> predictions;
+
+    Document(List<CorpusSample> references,
+        Future<List<CorpusSample>> predictions) {
+      this.references = references;
+      this.predictions = predictions;
+    }
+  }
+
+  /**
+   * A classifier and the sequential evaluator scoring its predictions.
+   */
+  private static class Worker {
+
+    private final NameClassifier nameFinder;
+    private final NameFinderEvaluator evaluator;
+
+    Worker(NameClassifier nameFinder) {
+      this.nameFinder = nameFinder;
+      this.evaluator = new NameFinderEvaluator(nameFinder);
+    }
+
+    /**
+     * Tags a document starting from empty adaptive data, as the sequential
+     * evaluator does at the start of the corpus and at every document
+     * boundary.
+     */
+    List<CorpusSample> tag(List<CorpusSample> references) {
+      nameFinder.clearAdaptiveData();
+      List<CorpusSample> predictions = new ArrayList<CorpusSample>(
+          references.size());
+      for (CorpusSample reference : references) {
+        predictions.add(evaluator.processSample(reference));
+      }
+      return predictions;
+    }
+  }
+
+}
@@ -0,0 +1,166 @@
+/*
+ *Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.eval;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.Span;
+import opennlp.tools.util.TrainingParameters;
+import opennlp.tools.util.eval.FMeasure;
+import es.ehu.si.ixa.pipe.nerc.MultiModelNameFinder;
+import es.ehu.si.ixa.pipe.nerc.NameFactory;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
+import es.ehu.si.ixa.pipe.nerc.formats.GermEval2014NestedNameStream;
+import es.ehu.si.ixa.pipe.nerc.formats.NestedCorpusSample;
+import es.ehu.si.ixa.pipe.nerc.train.InputOutputUtils;
+
+/**
+ * Evaluation of the outer and inner named entities of the GermEval 2014
+ * corpus in one pass. The test set is parsed once for both levels and every
+ * sentence is tagged once with the outer and the inner model, the first and
+ * second TagModels, which share their common features. As in
+ * {@link NameFinderEvaluator}, the adaptive data is only cleared at the start
+ * of every document.
+ *
+ * @author ragerri
+ */
+public class NestedEvaluate {
+
+  /**
+   * The reference corpus to evaluate against.
+   */
+  private ObjectStream<NestedCorpusSample> testSamples;
+  /**
+   * The outer and inner name finders.
+   */
+  private MultiModelNameFinder nameFinder;
+  /**
+   * The F measure of each level and of both levels together.
+   */
+  private FMeasure outerFMeasure = new FMeasure();
+  private FMeasure innerFMeasure = new FMeasure();
+  private FMeasure fmeasure = new FMeasure();
+
+  /**
+   * Construct an evaluator.
+   *
+   * @param params the parameters with the test set and the outer and inner
+   *          TagModels
+   * @throws IOException if input data or the models are not available
+   */
+  public NestedEvaluate(final TrainingParameters params) throws IOException {
+    String[] models = InputOutputUtils.getTagModels(params);
+    if (models == null || models.length != 2) {
+      throw new IllegalArgumentException(
+          "Nested evaluation requires an outer and an inner TagModels!");
+    }
+    String testSet = InputOutputUtils.getDataSet("TestSet", params);
+    testSamples = new GermEval2014NestedNameStream(
+        InputOutputUtils.readInputData(testSet));
+    nameFinder = new MultiModelNameFinder(params, new NameFactory());
+  }
+
+  /**
+   * Evaluate and print precision, recall and F measure of each level and of
+   * both levels together.
+   * @throws IOException if test corpus not loaded
+   */
+  public final void evaluate() throws IOException {
+    evaluate(new NameFinderEvaluationMonitor[0], new NameFinderEvaluationMonitor[0]);
+    printFMeasures();
+  }
+
+  /**
+   * Evaluate and print the precision, recall and F measure per named entity
+   * class of each level.
+   * @throws IOException if test corpus not loaded
+   */
+  public final void detailEvaluate() throws IOException {
+    NameFinderDetailedFMeasureListener outerListener = new NameFinderDetailedFMeasureListener();
+    NameFinderDetailedFMeasureListener innerListener = new NameFinderDetailedFMeasureListener();
+    evaluate(new NameFinderEvaluationMonitor[] { outerListener },
+        new NameFinderEvaluationMonitor[] { innerListener });
+    System.out.println("Outer named entities:");
+    System.out.println(outerListener.toString());
+    System.out.println("Inner named entities:");
+    System.out.println(innerListener.toString());
+    printFMeasures();
+  }
+
+  private void printFMeasures() {
+    System.out.println("Outer: " + outerFMeasure.toString());
+    System.out.println("Inner: " + innerFMeasure.toString());
+    System.out.println("Outer and inner: " + fmeasure.toString());
+  }
+
+  /**
+   * Tags every sentence of the test set with both models and updates the
+   * scores of both levels.
+   *
+   * @param outerListeners the listeners of the outer level
+   * @param innerListeners the listeners of the inner level
+   * @throws IOException if test corpus not loaded
+   */
+  private void evaluate(NameFinderEvaluationMonitor[] outerListeners,
+      NameFinderEvaluationMonitor[] innerListeners) throws IOException {
+    NestedCorpusSample reference;
+    try {
+      while ((reference = testSamples.read()) != null) {
+        if (reference.isClearAdaptiveDataSet()) {
+          nameFinder.clearAdaptiveData();
+        }
+        List<List<Span>> spans = nameFinder.findByModel(reference.getSentence());
+        Span[] outerNames = spans.get(0).toArray(new Span[spans.get(0).size()]);
+        Span[] innerNames = spans.get(1).toArray(new Span[spans.get(1).size()]);
+        update(outerFMeasure, outerListeners, reference.getOuterSample(),
+            outerNames);
+        update(innerFMeasure, innerListeners, reference.getInnerSample(),
+            innerNames);
+        fmeasure.updateScores(concat(reference.getOuterNames(),
+            reference.getInnerNames()), concat(outerNames, innerNames));
+      }
+    } finally {
+      testSamples.close();
+    }
+  }
+
+  private static void update(FMeasure levelFMeasure,
+      NameFinderEvaluationMonitor[] listeners, CorpusSample reference,
+      Span[] predictedNames) {
+    levelFMeasure.updateScores(reference.getNames(), predictedNames);
+    CorpusSample prediction = reference.withNames(predictedNames);
+    boolean correct = Arrays.equals(reference.getNames(), predictedNames);
+    for (NameFinderEvaluationMonitor listener : listeners) {
+      if (correct) {
+        listener.correctlyClassified(reference, prediction);
+      } else {
+        listener.missclassified(reference, prediction);
+      }
+    }
+  }
+
+  private static Span[] concat(Span[] first, Span[] second) {
+    Span[] spans = new Span[first.length + second.length];
+    System.arraycopy(first, 0, spans, 0, first.length);
+    System.arraycopy(second, 0, spans, first.length, second.length);
+    return spans;
+  }
+
+}
@@ -9,18 +9,37 @@ import java.util.List;
  */
 public class BigramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
+  /**
+   * The predicates of the models to tag with, or null to generate every
+   * feature.
+   */
+  private final PredicateFilter filter;
+
+  public BigramClassFeatureGenerator() {
+    this(null);
+  }
+
+  /**
+   * Initializes the generator to skip the features the models do not have.
+   *
+   * @param filter the predicates of the models, or null for every feature
+   */
+  public BigramClassFeatureGenerator(PredicateFilter filter) {
+    this.filter = filter;
+  }
+
   public void createFeatures(List<String> features, String[] tokens, int index, String[] previousOutcomes) {
     String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
     //bi-gram features 
     if (index > 0) {
-      features.add("pw,w="+tokens[index-1]+","+tokens[index]);
+      PredicateFilter.addFeature(features, filter, "pw,w=", tokens[index-1], tokens[index]);
       String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index-1]);
-      features.add("pwc,wc="+pwc+","+wc);
+      PredicateFilter.addFeature(features, filter, "pwc,wc=", pwc, wc);
     }
     if (index+1 < tokens.length) {
-      features.add("w,nw="+tokens[index]+","+tokens[index+1]);
+      PredicateFilter.addFeature(features, filter, "w,nw=", tokens[index], tokens[index+1]);
       String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index+1]); 
-      features.add("wc,nc="+wc+","+nwc);
+      PredicateFilter.addFeature(features, filter, "wc,nc=", wc, nwc);
     }
   } 
 }
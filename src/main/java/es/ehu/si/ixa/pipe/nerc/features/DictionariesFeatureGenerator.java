@@ -0,0 +1,183 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.features;
+
+import java.util.Arrays;
+import java.util.List;
+
+import es.ehu.si.ixa.pipe.nerc.dict.Dictionary;
+
+/**
+ * Generates the dictionary features of several dictionaries at once. The
+ * sentence is matched against all the dictionaries in one pass: the entries
+ * starting at every token are built once and looked up in every dictionary,
+ * which finds, as the {@link es.ehu.si.ixa.pipe.nerc.DictionaryNameFinder}
+ * does, the longest match ignoring case and continues after it. The
+ * dictionaries matching every token are kept in a bitset, from which the
+ * features of a token are created without looking at the other tokens. The
+ * features are the same as those of one {@link DictionaryFeatureGenerator}
+ * per dictionary.
+ *
+ * @author ragerri
+ */
+public class DictionariesFeatureGenerator extends FeatureGeneratorAdapter {
+
+  private final String[] prefixes;
+  private final Dictionary[] dictionaries;
+  /**
+   * The maximum number of tokens of the entries of every dictionary.
+   */
+  private final int[] maxTokens;
+  /**
+   * The number of longs of the bitset of every token.
+   */
+  private final int words;
+
+  private String[] currentSentence;
+  /**
+   * The dictionaries matching every token, words longs per token.
+   */
+  private long[] memberships = new long[0];
+  /**
+   * The first token every dictionary can match.
+   */
+  private final int[] nextOffsets;
+  private String[] entries = new String[0];
+
+  /**
+   * Initializes the current instance.
+   *
+   * @param prefixes the prefix of the features of every dictionary
+   * @param dictionaries the ignore case dictionaries
+   */
+  public DictionariesFeatureGenerator(List<String> prefixes,
+      List<Dictionary> dictionaries) {
+    if (prefixes.size() != dictionaries.size()) {
+      throw new IllegalArgumentException(
+          "There must be one prefix per dictionary!");
+    }
+    this.prefixes = prefixes.toArray(new String[prefixes.size()]);
+    this.dictionaries = dictionaries.toArray(new Dictionary[dictionaries.size()]);
+    this.maxTokens = new int[this.dictionaries.length];
+    for (int d = 0; d < maxTokens.length; d++) {
+      maxTokens[d] = getMaxTokens(this.dictionaries[d]);
+    }
+    this.words = (this.dictionaries.length + 63) / 64;
+    this.nextOffsets = new int[this.dictionaries.length];
+  }
+
+  /**
+   * Gets the maximum number of tokens of the entries of a dictionary. An
+   * entry with n spaces can not match more than n + 1 tokens.
+   */
+  private static int getMaxTokens(Dictionary dictionary) {
+    int max = 0;
+    for (String entry : dictionary.getDict().keySet()) {
+      int tokens = 1;
+      for (int i = 0; i < entry.length(); i++) {
+        if (entry.charAt(i) == ' ') {
+          tokens++;
+        }
+      }
+      max = Math.max(max, tokens);
+    }
+    return max;
+  }
+
+  public void createFeatures(List<String> features, String[] tokens, int index,
+      String[] preds) {
+    // cache results for sentence
+    if (currentSentence != tokens) {
+      currentSentence = tokens;
+      match(tokens);
+    }
+    int base = index * words;
+    for (int w = 0; w < words; w++) {
+      long bits = memberships[base + w];
+      while (bits != 0) {
+        int d = w * 64 + Long.numberOfTrailingZeros(bits);
+        bits &= bits - 1;
+        features.add(prefixes[d] + ":w=dic");
+        features.add(prefixes[d] + ":w=dic=" + tokens[index]);
+      }
+    }
+  }
+
+  /**
+   * Finds the dictionaries matching every token of the sentence.
+   */
+  private void match(String[] tokens) {
+    int size = tokens.length * words;
+    if (memberships.length < size) {
+      memberships = new long[size];
+    } else {
+      Arrays.fill(memberships, 0, size, 0L);
+    }
+    for (int d = 0; d < nextOffsets.length; d++) {
+      nextOffsets[d] = 0;
+    }
+    for (int offsetFrom = 0; offsetFrom < tokens.length; offsetFrom++) {
+      // the longest entry of the dictionaries which can start here
+      int maxLength = 0;
+      for (int d = 0; d < dictionaries.length; d++) {
+        if (nextOffsets[d] <= offsetFrom) {
+          maxLength = Math.max(maxLength, maxTokens[d]);
+        }
+      }
+      maxLength = Math.min(maxLength, tokens.length - offsetFrom);
+      if (maxLength == 0) {
+        continue;
+      }
+      buildEntries(tokens, offsetFrom, maxLength);
+      for (int d = 0; d < dictionaries.length; d++) {
+        if (nextOffsets[d] > offsetFrom) {
+          continue;
+        }
+        int length = Math.min(maxTokens[d], maxLength);
+        while (length > 0
+            && !dictionaries[d].getDict().containsKey(entries[length - 1])) {
+          length--;
+        }
+        if (length > 0) {
+          for (int i = offsetFrom; i < offsetFrom + length; i++) {
+            memberships[i * words + d / 64] |= 1L << (d % 64);
+          }
+          // skip over the found tokens for the next search
+          nextOffsets[d] = offsetFrom + length;
+        }
+      }
+    }
+  }
+
+  /**
+   * Builds the lower case entries of one to maxLength tokens starting at a
+   * token, as {@link es.ehu.si.ixa.pipe.nerc.DictionaryNameFinder} does.
+   */
+  private void buildEntries(String[] tokens, int offsetFrom, int maxLength) {
+    if (entries.length < maxLength) {
+      entries = new String[maxLength];
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int length = 1; length <= maxLength; length++) {
+      if (length > 1) {
+        sb.append(' ');
+      }
+      sb.append(tokens[offsetFrom + length - 1]);
+      entries[length - 1] = sb.toString().trim().toLowerCase();
+    }
+  }
+}
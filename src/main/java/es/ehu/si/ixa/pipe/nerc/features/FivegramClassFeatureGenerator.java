@@ -11,25 +11,44 @@ import java.util.List;
  */
 public class FivegramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
+  /**
+   * The predicates of the models to tag with, or null to generate every
+   * feature.
+   */
+  private final PredicateFilter filter;
+
+  public FivegramClassFeatureGenerator() {
+    this(null);
+  }
+
+  /**
+   * Initializes the generator to skip the features the models do not have.
+   *
+   * @param filter the predicates of the models, or null for every feature
+   */
+  public FivegramClassFeatureGenerator(PredicateFilter filter) {
+    this.filter = filter;
+  }
+
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
     // fivegram features
     if (index > 3) {
-      features.add("ppppw,pppw,ppw,pw,w=" + tokens[index - 4] + "," + tokens[index - 3] + "," + tokens[index - 2] + "," + tokens[index - 1] + "," + tokens[index]);
+      PredicateFilter.addFeature(features, filter, "ppppw,pppw,ppw,pw,w=", tokens[index - 4], tokens[index - 3], tokens[index - 2], tokens[index - 1], tokens[index]);
       String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 1]);
       String ppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 2]);
       String pppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 3]);
       String ppppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 4]);
-      features.add("pppwc,ppwc,pwc,wc=" + ppppwc + "," + pppwc + "," + ppwc + "," + pwc + "," + wc);
+      PredicateFilter.addFeature(features, filter, "pppwc,ppwc,pwc,wc=", ppppwc, pppwc, ppwc, pwc, wc);
     }
     if (index + 4 < tokens.length) {
-      features.add("w,nw,nnw,nnnw,nnnnw=" + tokens[index] + "," + tokens[index + 1] + "," + tokens[index + 2] + "," + tokens[index + 3] + "," + tokens[index + 4]);
+      PredicateFilter.addFeature(features, filter, "w,nw,nnw,nnnw,nnnnw=", tokens[index], tokens[index + 1], tokens[index + 2], tokens[index + 3], tokens[index + 4]);
       String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 1]);
       String nnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 2]);
       String nnnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 3]);
       String nnnnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 4]);
-      features.add("wc,nwc,nnwc,nnnwc=" + wc + "," + nwc + "," + nnwc + "," + nnnwc + "," + nnnnwc);
+      PredicateFilter.addFeature(features, filter, "wc,nwc,nnwc,nnnwc=", wc, nwc, nnwc, nnnwc, nnnnwc);
     }
   }
 }
@@ -11,23 +11,42 @@ import java.util.List;
  */
 public class FourgramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
+  /**
+   * The predicates of the models to tag with, or null to generate every
+   * feature.
+   */
+  private final PredicateFilter filter;
+
+  public FourgramClassFeatureGenerator() {
+    this(null);
+  }
+
+  /**
+   * Initializes the generator to skip the features the models do not have.
+   *
+   * @param filter the predicates of the models, or null for every feature
+   */
+  public FourgramClassFeatureGenerator(PredicateFilter filter) {
+    this.filter = filter;
+  }
+
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
     // fourgram features
     if (index > 2) {
-      features.add("pppw,ppw,pw,w=" + tokens[index - 3] + "," + tokens[index - 2] + "," + tokens[index - 1] + "," + tokens[index]);
+      PredicateFilter.addFeature(features, filter, "pppw,ppw,pw,w=", tokens[index - 3], tokens[index - 2], tokens[index - 1], tokens[index]);
       String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 1]);
       String ppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 2]);
       String pppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 3]);
-      features.add("pppwc,ppwc,pwc,wc=" + pppwc + "," + ppwc + "," + pwc + "," + wc);
+      PredicateFilter.addFeature(features, filter, "pppwc,ppwc,pwc,wc=", pppwc, ppwc, pwc, wc);
     }
     if (index + 3 < tokens.length) {
-      features.add("w,nw,nnw,nnnw=" + tokens[index] + "," + tokens[index + 1] + "," + tokens[index + 2] + "," + tokens[index + 3]);
+      PredicateFilter.addFeature(features, filter, "w,nw,nnw,nnnw=", tokens[index], tokens[index + 1], tokens[index + 2], tokens[index + 3]);
       String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 1]);
       String nnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 2]);
       String nnnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 3]);
-      features.add("wc,nwc,nnwc,nnnwc=" + wc + "," + nwc + "," + nnwc + "," + nnnwc);
+      PredicateFilter.addFeature(features, filter, "wc,nwc,nnwc,nnnwc=", wc, nwc, nnwc, nnnwc);
     }
   }
 }
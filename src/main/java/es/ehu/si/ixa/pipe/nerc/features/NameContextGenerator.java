@@ -26,4 +26,25 @@ public interface NameContextGenerator extends BeamSearchContextGenerator<String>
    */
   public void clearAdaptiveData();
 
+  /**
+   * Returns the features of the token at the specified index which do not depend on the previous outcomes.
+   * They are the same for every hypothesis, so decoders compute them once per token.
+   * @param index The index of the token.
+   * @param tokens The tokens of the sentence.
+   * @param additionalContext Addition features which may be based on a context outside of the sentence.
+   * @return the static features of the token.
+   */
+  public String[] getStaticContext(int index, String[] tokens, Object[] additionalContext);
+
+  /**
+   * Returns the features of the token at the specified index which depend on the previous outcomes.
+   * The static context followed by these features is the context returned by <code>getContext</code>.
+   * @param index The index of the token.
+   * @param tokens The tokens of the sentence.
+   * @param po The previous outcome.
+   * @param ppo The outcome before the previous one.
+   * @return the outcome dependent features of the token.
+   */
+  public String[] getOutcomeContext(int index, String[] tokens, String po, String ppo);
+
 }
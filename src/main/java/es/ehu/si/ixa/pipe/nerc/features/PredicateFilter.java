@@ -0,0 +1,163 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.features;
+
+import java.util.List;
+
+/**
+ * The hashes of the predicates of one or more models, used by the feature
+ * generators to skip the features the models have never seen. Unknown
+ * predicates do not change the probabilities of a maxent or perceptron
+ * model, so dropping them gives the same results. The hash of a feature made
+ * of several parts is computed from the parts, as {@link String#hashCode()}
+ * would, so that features whose hash is not in the filter are never built.
+ * Features with the hash of a predicate are always kept, even if they are
+ * not predicates themselves.
+ *
+ * @author ragerri
+ */
+public class PredicateFilter {
+
+  /**
+   * Open addressing table of the hashes, where 0 marks an empty slot.
+   */
+  private final int[] table;
+  private final int mask;
+  /**
+   * Whether a predicate has hash 0.
+   */
+  private boolean containsZero;
+
+  /**
+   * Creates a filter for the predicates of several models.
+   *
+   * @param predicateHashes the hashes of the predicates of every model
+   */
+  public PredicateFilter(int[]... predicateHashes) {
+    int size = 0;
+    for (int[] hashes : predicateHashes) {
+      size += hashes.length;
+    }
+    int capacity = 2;
+    while (capacity < size * 2) {
+      capacity <<= 1;
+    }
+    this.table = new int[capacity];
+    this.mask = capacity - 1;
+    for (int[] hashes : predicateHashes) {
+      for (int hash : hashes) {
+        add(hash);
+      }
+    }
+  }
+
+  private void add(int hash) {
+    if (hash == 0) {
+      containsZero = true;
+      return;
+    }
+    int slot = spread(hash) & mask;
+    while (table[slot] != 0) {
+      if (table[slot] == hash) {
+        return;
+      }
+      slot = (slot + 1) & mask;
+    }
+    table[slot] = hash;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Checks whether a feature may be a predicate of the models.
+   *
+   * @param hash the hash of the feature
+   * @return false if the feature is not a predicate of the models
+   */
+  public boolean mightContain(int hash) {
+    if (hash == 0) {
+      return containsZero;
+    }
+    int slot = spread(hash) & mask;
+    while (table[slot] != 0) {
+      if (table[slot] == hash) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  /**
+   * Checks whether a feature may be a predicate of the models.
+   *
+   * @param feature the feature
+   * @return false if the feature is not a predicate of the models
+   */
+  public boolean mightContain(String feature) {
+    return mightContain(feature.hashCode());
+  }
+
+  /**
+   * Computes the hash of a string appended to a string with the given hash.
+   *
+   * @param hash the hash of the string so far
+   * @param part the string to append
+   * @return the hash of the concatenation
+   */
+  public static int extend(int hash, String part) {
+    for (int i = 0; i < part.length(); i++) {
+      hash = 31 * hash + part.charAt(i);
+    }
+    return hash;
+  }
+
+  /**
+   * Adds a feature made of a prefix and several values separated by commas,
+   * unless the filter tells that the models do not have it.
+   *
+   * @param features the features
+   * @param filter the filter, or null to add every feature
+   * @param prefix the prefix of the feature
+   * @param values the values
+   */
+  public static void addFeature(List<String> features, PredicateFilter filter,
+      String prefix, String... values) {
+    if (filter != null) {
+      int hash = prefix.hashCode();
+      for (int i = 0; i < values.length; i++) {
+        if (i > 0) {
+          hash = 31 * hash + ',';
+        }
+        hash = extend(hash, values[i]);
+      }
+      if (!filter.mightContain(hash)) {
+        return;
+      }
+    }
+    StringBuilder sb = new StringBuilder(prefix);
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        sb.append(',');
+      }
+      sb.append(values[i]);
+    }
+    features.add(sb.toString());
+  }
+}
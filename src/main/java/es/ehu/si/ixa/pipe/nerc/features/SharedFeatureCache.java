@@ -0,0 +1,102 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.features;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The features of the current sentence, by feature family and token, shared
+ * by the {@link SharedFeatureGenerator}s of several models tagging the same
+ * sentence. The cache is cleared when a new sentence, that is, a different
+ * token array, is tagged. It is not thread safe.
+ *
+ * @author ragerri
+ */
+public class SharedFeatureCache {
+
+  private String[] tokens;
+  private final Map<String, List<String>[]> families = new HashMap<String, List<String>[]>();
+
+  private long numberOfCacheHits;
+  private long numberOfCacheMisses;
+
+  /**
+   * Gets the features of a family for a token.
+   *
+   * @param family the feature family
+   * @param sentence the tokens of the sentence
+   * @param index the index of the token
+   * @return the features, or null if they have not been generated yet
+   */
+  public List<String> get(String family, String[] sentence, int index) {
+    if (sentence != tokens) {
+      families.clear();
+      tokens = sentence;
+    }
+    List<String>[] features = families.get(family);
+    if (features == null || features[index] == null) {
+      numberOfCacheMisses++;
+      return null;
+    }
+    numberOfCacheHits++;
+    return features[index];
+  }
+
+  /**
+   * Stores the features of a family for a token of the current sentence.
+   *
+   * @param family the feature family
+   * @param sentence the tokens of the sentence
+   * @param index the index of the token
+   * @param tokenFeatures the features
+   */
+  @SuppressWarnings("unchecked")
+  public void put(String family, String[] sentence, int index,
+      List<String> tokenFeatures) {
+    if (sentence != tokens) {
+      families.clear();
+      tokens = sentence;
+    }
+    List<String>[] features = families.get(family);
+    if (features == null) {
+      features = new List[sentence.length];
+      families.put(family, features);
+    }
+    features[index] = tokenFeatures;
+  }
+
+  /**
+   * Retrieves the number of times the features of a family were reused.
+   *
+   * @return number of cache hits
+   */
+  public long getNumberOfCacheHits() {
+    return numberOfCacheHits;
+  }
+
+  /**
+   * Retrieves the number of times the features of a family were generated.
+   *
+   * @return number of cache misses
+   */
+  public long getNumberOfCacheMisses() {
+    return numberOfCacheMisses;
+  }
+
+}
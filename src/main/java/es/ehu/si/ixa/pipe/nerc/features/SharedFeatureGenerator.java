@@ -0,0 +1,71 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.features;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Generates the features of a feature family once per token for all the
+ * models tagging a sentence: the first model generates them and the others
+ * read them from a {@link SharedFeatureCache}. Only generators whose features
+ * depend on the tokens alone, and not on adaptive data or previous outcomes,
+ * can be shared.
+ *
+ * @author ragerri
+ */
+public class SharedFeatureGenerator implements AdaptiveFeatureGenerator {
+
+  private final SharedFeatureCache cache;
+  private final String family;
+  private final AdaptiveFeatureGenerator generator;
+
+  /**
+   * Creates a shared feature generator.
+   *
+   * @param cache the cache shared by the models
+   * @param family the feature family, which identifies the features of the
+   *          generator and its configuration
+   * @param generator the generator
+   */
+  public SharedFeatureGenerator(SharedFeatureCache cache, String family,
+      AdaptiveFeatureGenerator generator) {
+    this.cache = cache;
+    this.family = family;
+    this.generator = generator;
+  }
+
+  public void createFeatures(List<String> features, String[] tokens,
+      int index, String[] previousOutcomes) {
+    List<String> tokenFeatures = cache.get(family, tokens, index);
+    if (tokenFeatures == null) {
+      tokenFeatures = new ArrayList<String>();
+      generator.createFeatures(tokenFeatures, tokens, index, previousOutcomes);
+      cache.put(family, tokens, index, tokenFeatures);
+    }
+    features.addAll(tokenFeatures);
+  }
+
+  public void updateAdaptiveData(String[] tokens, String[] outcomes) {
+    generator.updateAdaptiveData(tokens, outcomes);
+  }
+
+  public void clearAdaptiveData() {
+    generator.clearAdaptiveData();
+  }
+
+}
@@ -11,21 +11,40 @@ import java.util.List;
  */
 public class TrigramClassFeatureGenerator extends FeatureGeneratorAdapter {
 
+  /**
+   * The predicates of the models to tag with, or null to generate every
+   * feature.
+   */
+  private final PredicateFilter filter;
+
+  public TrigramClassFeatureGenerator() {
+    this(null);
+  }
+
+  /**
+   * Initializes the generator to skip the features the models do not have.
+   *
+   * @param filter the predicates of the models, or null for every feature
+   */
+  public TrigramClassFeatureGenerator(PredicateFilter filter) {
+    this.filter = filter;
+  }
+
   public void createFeatures(List<String> features, String[] tokens, int index,
       String[] previousOutcomes) {
     String wc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
     // trigram features
     if (index > 1) {
-      features.add("ppw,pw,w=" + tokens[index - 2] + "," + tokens[index - 1] + "," + tokens[index]);
+      PredicateFilter.addFeature(features, filter, "ppw,pw,w=", tokens[index - 2], tokens[index - 1], tokens[index]);
       String pwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 1]);
       String ppwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index - 2]);
-      features.add("ppwc,pwc,wc=" + ppwc + "," + pwc + "," + wc);
+      PredicateFilter.addFeature(features, filter, "ppwc,pwc,wc=", ppwc, pwc, wc);
     }
     if (index + 2 < tokens.length) {
-      features.add("w,nw,nnw=" + tokens[index] + "," + tokens[index + 1] + "," + tokens[index + 2]);
+      PredicateFilter.addFeature(features, filter, "w,nw,nnw=", tokens[index], tokens[index + 1], tokens[index + 2]);
       String nwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 1]);
       String nnwc = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index + 2]);
-      features.add("wc,nwc,nnwc=" + wc + "," + nwc + "," + nnwc);
+      PredicateFilter.addFeature(features, filter, "wc,nwc,nnwc=", wc, nwc, nnwc);
     }
   }
 }
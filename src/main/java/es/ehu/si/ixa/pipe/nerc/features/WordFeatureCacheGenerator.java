@@ -0,0 +1,138 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.features;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+
+/**
+ * Caches the features of a generator by token. The features of the token,
+ * token class, prefix, suffix, character n-gram, Brown and Clark cluster
+ * generators depend only on the current token, and as a few frequent words
+ * make up most of the text, most tokens find their features in the cache.
+ * The caches are bounded, evicting the least recently used words, and shared
+ * by every generator of the same feature family and maximum size, also across
+ * threads. The family must identify the lexicons of the generator, e.g., the
+ * path of its cluster lexicon, as generators with other lexicons generate
+ * other features for the same token.
+ *
+ * @author ragerri
+ */
+public class WordFeatureCacheGenerator extends FeatureGeneratorAdapter {
+
+  /**
+   * The cache of every feature family and maximum size.
+   */
+  private static final ConcurrentHashMap<String, Cache<String, String[]>> caches =
+      new ConcurrentHashMap<String, Cache<String, String[]>>();
+
+  private final AdaptiveFeatureGenerator generator;
+  private final Cache<String, String[]> cache;
+
+  /**
+   * Creates a cached generator.
+   *
+   * @param family the feature family, which identifies the generator, its
+   *          configuration and its lexicons
+   * @param generator the generator, whose features only depend on the
+   *          current token
+   * @param maximumSize the maximum number of words of the cache
+   */
+  public WordFeatureCacheGenerator(String family,
+      AdaptiveFeatureGenerator generator, long maximumSize) {
+    this.generator = generator;
+    this.cache = getCache(family, maximumSize);
+  }
+
+  private static Cache<String, String[]> getCache(String family,
+      long maximumSize) {
+    String key = family + ",size=" + maximumSize;
+    Cache<String, String[]> cache = caches.get(key);
+    if (cache == null) {
+      cache = CacheBuilder.newBuilder().maximumSize(maximumSize)
+          .recordStats().build();
+      Cache<String, String[]> previous = caches.putIfAbsent(key, cache);
+      if (previous != null) {
+        cache = previous;
+      }
+    }
+    return cache;
+  }
+
+  public void createFeatures(List<String> features, String[] tokens,
+      int index, String[] previousOutcomes) {
+    String[] tokenFeatures = cache.getIfPresent(tokens[index]);
+    if (tokenFeatures == null) {
+      List<String> generated = new ArrayList<String>();
+      generator.createFeatures(generated, tokens, index, previousOutcomes);
+      tokenFeatures = generated.toArray(new String[generated.size()]);
+      cache.put(tokens[index], tokenFeatures);
+    }
+    Collections.addAll(features, tokenFeatures);
+  }
+
+  /**
+   * Retrieves the statistics of the cache of every feature family and
+   * maximum size.
+   *
+   * @return the statistics by family and size
+   */
+  public static Map<String, CacheStats> getStatistics() {
+    Map<String, CacheStats> statistics = new TreeMap<String, CacheStats>();
+    for (Map.Entry<String, Cache<String, String[]>> entry : caches.entrySet()) {
+      statistics.put(entry.getKey(), entry.getValue().stats());
+    }
+    return statistics;
+  }
+
+  /**
+   * Reports the words, hits, misses, hit rate and evictions of the cache of
+   * every feature family.
+   *
+   * @return the report, one line per family
+   */
+  public static String report() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("family\twords\thits\tmisses\thit rate\tevictions\n");
+    for (Map.Entry<String, CacheStats> entry : getStatistics().entrySet()) {
+      CacheStats stats = entry.getValue();
+      sb.append(entry.getKey()).append("\t")
+          .append(caches.get(entry.getKey()).size()).append("\t")
+          .append(stats.hitCount()).append("\t")
+          .append(stats.missCount()).append("\t")
+          .append(String.format(Locale.ENGLISH, "%.4f", stats.hitRate()))
+          .append("\t").append(stats.evictionCount()).append("\n");
+    }
+    return sb.toString();
+  }
+
+  @Override
+  public String toString() {
+    CacheStats stats = cache.stats();
+    return super.toString() + ": hits=" + stats.hitCount() + " misses="
+        + stats.missCount() + " hit%" + stats.hitRate();
+  }
+}
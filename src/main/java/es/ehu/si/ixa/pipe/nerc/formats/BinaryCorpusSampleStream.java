@@ -0,0 +1,265 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.Span;
+
+/**
+ * Reads a corpus previously converted into the compact binary format written
+ * by {@link #write(ObjectStream, OutputStream)}. The format stores every
+ * distinct token and entity type once, the first time it appears, and refers
+ * to it by number afterwards, so reading a pre-tokenised corpus neither parses
+ * text nor allocates a string per token: all the occurrences of a word share
+ * the same instance.
+ *
+ * @author ragerri
+ */
+public class BinaryCorpusSampleStream implements ObjectStream<CorpusSample> {
+
+  /**
+   * The magic number at the start of a binary corpus: "NERC".
+   */
+  private static final int MAGIC = 0x4E455243;
+  private static final int VERSION = 1;
+  private static final int CLEAR_ADAPTIVE_DATA = 1;
+
+  /**
+   * The binary corpus file, or null if the corpus is in memory.
+   */
+  private final File file;
+  private final byte[] corpus;
+  private DataInputStream input;
+  private final List<String> words = new ArrayList<String>();
+  private final List<String> types = new ArrayList<String>();
+
+  /**
+   * Opens a binary corpus.
+   *
+   * @param file the binary corpus
+   * @throws IOException if the file can not be read or is not a binary corpus
+   */
+  public BinaryCorpusSampleStream(File file) throws IOException {
+    this.file = file;
+    this.corpus = null;
+    open();
+  }
+
+  /**
+   * Reads a binary corpus held in memory.
+   *
+   * @param corpus the bytes written by {@link #write(ObjectStream, OutputStream)}
+   * @throws IOException if the bytes are not a binary corpus
+   */
+  public BinaryCorpusSampleStream(byte[] corpus) throws IOException {
+    this.file = null;
+    this.corpus = corpus;
+    open();
+  }
+
+  private void open() throws IOException {
+    if (file != null) {
+      input = new DataInputStream(new BufferedInputStream(new FileInputStream(
+          file), 1 << 16));
+    } else {
+      input = new DataInputStream(new ByteArrayInputStream(corpus));
+    }
+    if (!readHeader(input)) {
+      input.close();
+      throw new IOException((file != null ? file : "The corpus")
+          + " is not a binary corpus!");
+    }
+    words.clear();
+    types.clear();
+    types.add(null);
+  }
+
+  private static boolean readHeader(DataInputStream in) throws IOException {
+    try {
+      return in.readInt() == MAGIC && in.readInt() == VERSION;
+    } catch (EOFException e) {
+      return false;
+    }
+  }
+
+  /**
+   * Checks whether a file is a binary corpus.
+   *
+   * @param file the file
+   * @return true if the file starts with the binary corpus header
+   * @throws IOException if the file can not be read
+   */
+  public static boolean isBinaryCorpus(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      return readHeader(new DataInputStream(in));
+    } finally {
+      in.close();
+    }
+  }
+
+  public CorpusSample read() throws IOException {
+    int flags = input.read();
+    if (flags == -1) {
+      return null;
+    }
+    String[] sentence = new String[readInt(input)];
+    for (int i = 0; i < sentence.length; i++) {
+      sentence[i] = readString(input, words);
+    }
+    Span[] names = new Span[readInt(input)];
+    for (int i = 0; i < names.length; i++) {
+      int start = readInt(input);
+      int end = start + readInt(input);
+      names[i] = new Span(start, end, readString(input, types));
+    }
+    return new CorpusSample(sentence, names,
+        (flags & CLEAR_ADAPTIVE_DATA) != 0);
+  }
+
+  /**
+   * Reads the number of a string, followed by the string itself the first
+   * time it appears.
+   */
+  private static String readString(DataInputStream in, List<String> strings)
+      throws IOException {
+    int id = readInt(in);
+    if (id == strings.size()) {
+      strings.add(in.readUTF());
+    } else if (id > strings.size()) {
+      throw new IOException("Corrupt binary corpus: unknown string " + id);
+    }
+    return strings.get(id);
+  }
+
+  private static int readInt(DataInputStream in) throws IOException {
+    int value = 0;
+    int shift = 0;
+    int b;
+    do {
+      b = in.readUnsignedByte();
+      value |= (b & 0x7F) << shift;
+      shift += 7;
+    } while ((b & 0x80) != 0);
+    return value;
+  }
+
+  public void reset() throws IOException, UnsupportedOperationException {
+    input.close();
+    open();
+  }
+
+  public void close() throws IOException {
+    input.close();
+  }
+
+  /**
+   * Converts a corpus into the binary format.
+   *
+   * @param samples the corpus
+   * @param out the output; it is not closed
+   * @throws IOException if the corpus can not be read or written
+   */
+  public static void write(ObjectStream<CorpusSample> samples, OutputStream out)
+      throws IOException {
+    DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+        out, 1 << 16));
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    Map<String, Integer> words = new HashMap<String, Integer>();
+    Map<String, Integer> types = new HashMap<String, Integer>();
+    types.put(null, 0);
+    CorpusSample sample;
+    while ((sample = samples.read()) != null) {
+      if (sample.getAdditionalContext() != null) {
+        throw new IOException(
+            "Samples with additional context can not be written to a binary corpus!");
+      }
+      output.write(sample.isClearAdaptiveDataSet() ? CLEAR_ADAPTIVE_DATA : 0);
+      String[] sentence = sample.getSentence();
+      writeInt(output, sentence.length);
+      for (String token : sentence) {
+        writeString(output, token, words);
+      }
+      Span[] names = sample.getNames();
+      writeInt(output, names.length);
+      for (Span name : names) {
+        writeInt(output, name.getStart());
+        writeInt(output, name.length());
+        writeString(output, name.getType(), types);
+      }
+    }
+    output.flush();
+  }
+
+  /**
+   * Converts a corpus into a binary corpus file.
+   *
+   * @param samples the corpus
+   * @param file the binary corpus file
+   * @throws IOException if the corpus can not be read or written
+   */
+  public static void write(ObjectStream<CorpusSample> samples, File file)
+      throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    try {
+      write(samples, out);
+    } finally {
+      out.close();
+    }
+  }
+
+  private static void writeString(DataOutputStream out, String string,
+      Map<String, Integer> strings) throws IOException {
+    Integer id = strings.get(string);
+    if (id == null) {
+      id = strings.size();
+      strings.put(string, id);
+      writeInt(out, id);
+      out.writeUTF(string);
+    } else {
+      writeInt(out, id);
+    }
+  }
+
+  private static void writeInt(DataOutputStream out, int value)
+      throws IOException {
+    while ((value & ~0x7F) != 0) {
+      out.write((value & 0x7F) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+}
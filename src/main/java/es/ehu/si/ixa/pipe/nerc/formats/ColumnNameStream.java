@@ -0,0 +1,286 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.Span;
+
+/**
+ * Fast reader for the column based CoNLL 2002 and CoNLL 2003 corpora. It
+ * produces the same samples as {@link Conll02NameStream} and
+ * {@link Conll03NameStream}, but it scans the file with a {@link NioLineReader},
+ * splits the columns without regular expressions and builds the name spans
+ * while reading the lines. Only the tokens and the entity types become
+ * strings; the types are shared by all the spans of the corpus.
+ *
+ * @author ragerri
+ */
+public class ColumnNameStream implements ObjectStream<CorpusSample> {
+
+  private final NioLineReader reader;
+  /**
+   * The accepted number of columns, the index is the language dependent
+   * position of the named entity tag, or -1.
+   */
+  private final int[] tagColumns;
+  /**
+   * True for the CoNLL 2003 encoding, where an I- tag can start a name, and
+   * false for the CoNLL 2002 encoding, where I- only continues a name.
+   */
+  private final boolean iob1;
+  /**
+   * Whether -DOCSTART- lines mark the start of a document.
+   */
+  private final boolean docStart;
+  /**
+   * Whether every sentence is a new document.
+   */
+  private final boolean clearEverySentence;
+
+  private final List<String> tokens = new ArrayList<String>();
+  private final List<Span> names = new ArrayList<Span>();
+  private final List<String> types = new ArrayList<String>();
+  private final int[] fieldStarts = new int[8];
+  private final int[] fieldEnds = new int[8];
+
+  private ColumnNameStream(File file, int[] tagColumns, boolean iob1,
+      boolean docStart, boolean clearEverySentence) throws IOException {
+    this.reader = new NioLineReader(file);
+    this.tagColumns = tagColumns;
+    this.iob1 = iob1;
+    this.docStart = docStart;
+    this.clearEverySentence = clearEverySentence;
+  }
+
+  /**
+   * Creates a reader for the dutch and spanish CoNLL 2002 data.
+   *
+   * @param lang the language
+   * @param file the corpus
+   * @return the stream
+   * @throws IOException if the file can not be opened
+   */
+  public static ColumnNameStream createConll02(String lang, File file)
+      throws IOException {
+    return new ColumnNameStream(file, tagColumns(3, 2), false,
+        lang.equalsIgnoreCase("nl"), lang.equalsIgnoreCase("es"));
+  }
+
+  /**
+   * Creates a reader for the english, german and italian CoNLL 2003 data.
+   *
+   * @param lang the language
+   * @param file the corpus
+   * @return the stream
+   * @throws IOException if the file can not be opened
+   */
+  public static ColumnNameStream createConll03(String lang, File file)
+      throws IOException {
+    int[] tagColumns;
+    if (lang.equalsIgnoreCase("en") || lang.equalsIgnoreCase("it")) {
+      // WORD POS-TAG SC-TAG NE-TAG
+      tagColumns = tagColumns(4, 3);
+    } else if (lang.equalsIgnoreCase("de")) {
+      // WORD LEMA-TAG POS-TAG SC-TAG NE-TAG
+      tagColumns = tagColumns(5, 4);
+    } else {
+      tagColumns = tagColumns(0, -1);
+    }
+    return new ColumnNameStream(file, tagColumns, true, true, false);
+  }
+
+  private static int[] tagColumns(int fields, int tagColumn) {
+    int[] tagColumns = new int[fields + 1];
+    for (int i = 0; i < tagColumns.length; i++) {
+      tagColumns[i] = -1;
+    }
+    tagColumns[fields] = tagColumn;
+    return tagColumns;
+  }
+
+  public CorpusSample read() throws IOException {
+    boolean isClearAdaptiveData = false;
+    tokens.clear();
+    names.clear();
+    int beginIndex = -1;
+    String type = null;
+
+    // Empty line indicates end of sentence
+    boolean hasLine;
+    while ((hasLine = reader.readLine()) && reader.getLineLength() > 0) {
+
+      if (docStart && reader.startsWith(Conll02NameStream.DOCSTART)) {
+        isClearAdaptiveData = true;
+        if (iob1) {
+          if (reader.readLine() && reader.getLineLength() > 0) {
+            throw new IOException("Empty line after -DOCSTART- not empty: '"
+                + reader.getLineAsString() + "'!");
+          }
+        }
+        continue;
+      }
+
+      char[] line = reader.getLine();
+      int fields = split(line, reader.getLineLength());
+      int tagColumn = fields < tagColumns.length ? tagColumns[fields] : -1;
+      if (tagColumn == -1) {
+        if (iob1) {
+          throw new IOException(
+              "Incorrect number of fields per line for language: '"
+                  + reader.getLineAsString() + "'!");
+        } else {
+          throw new IOException(
+              "Expected three fields per line in training data, got " + fields
+                  + " for line '" + reader.getLineAsString() + "'!");
+        }
+      }
+      int index = tokens.size();
+      tokens.add(new String(line, fieldStarts[0], fieldEnds[0] - fieldStarts[0]));
+
+      int tagStart = fieldStarts[tagColumn];
+      int tagLength = fieldEnds[tagColumn] - tagStart;
+      if (tagLength == 1 && line[tagStart] == 'O') {
+        if (beginIndex != -1) {
+          names.add(new Span(beginIndex, index, type));
+          beginIndex = -1;
+        }
+      } else if (tagLength >= 2 && line[tagStart] == 'B'
+          && line[tagStart + 1] == '-') {
+        if (beginIndex != -1) {
+          names.add(new Span(beginIndex, index, type));
+        }
+        beginIndex = index;
+        type = getType(line, tagStart + 2, tagLength - 2);
+      } else if (tagLength >= 2 && line[tagStart] == 'I'
+          && line[tagStart + 1] == '-') {
+        if (iob1) {
+          // I- starts or continues a current name entity
+          if (beginIndex == -1) {
+            beginIndex = index;
+            type = getType(line, tagStart + 2, tagLength - 2);
+          } else if (!endsWithType(line, tagStart, tagLength, type)) {
+            // we have a new tag type following a tagged word series
+            names.add(new Span(beginIndex, index, type));
+            beginIndex = index;
+            type = getType(line, tagStart + 2, tagLength - 2);
+          }
+        }
+        // otherwise I- just continues the current name, if any
+      } else {
+        throw new IOException("Invalid tag: "
+            + new String(line, tagStart, tagLength));
+      }
+    }
+
+    if (clearEverySentence) {
+      isClearAdaptiveData = true;
+    }
+
+    if (tokens.size() > 0) {
+      // if one span remains, create it here
+      if (beginIndex != -1) {
+        names.add(new Span(beginIndex, tokens.size(), type));
+      }
+      return new CorpusSample(tokens.toArray(new String[tokens.size()]),
+          names.toArray(new Span[names.size()]), isClearAdaptiveData);
+    } else if (hasLine) {
+      // Just filter out empty events, if two lines in a row are empty
+      return read();
+    } else {
+      // source stream is not returning anymore lines
+      return null;
+    }
+  }
+
+  /**
+   * Splits the line at every space as {@code String.split(" ")} does,
+   * dropping the trailing empty fields.
+   *
+   * @return the number of fields
+   */
+  private int split(char[] line, int length) {
+    int fields = 0;
+    int start = 0;
+    int nonEmpty = 0;
+    for (int i = 0; i <= length; i++) {
+      if (i == length || line[i] == ' ') {
+        if (fields < fieldStarts.length) {
+          fieldStarts[fields] = start;
+          fieldEnds[fields] = i;
+        }
+        fields++;
+        if (i > start) {
+          nonEmpty = fields;
+        }
+        start = i + 1;
+      }
+    }
+    return nonEmpty;
+  }
+
+  /**
+   * Gets the shared type string for the given characters.
+   */
+  private String getType(char[] line, int start, int length) {
+    for (int i = 0; i < types.size(); i++) {
+      String type = types.get(i);
+      if (regionMatches(line, start, length, type)) {
+        return type;
+      }
+    }
+    String type = new String(line, start, length);
+    types.add(type);
+    return type;
+  }
+
+  /**
+   * Checks whether the tag ends with "-" plus the type.
+   */
+  private static boolean endsWithType(char[] line, int tagStart, int tagLength,
+      String type) {
+    int start = tagStart + tagLength - type.length();
+    return start > tagStart && line[start - 1] == '-'
+        && regionMatches(line, start, type.length(), type);
+  }
+
+  private static boolean regionMatches(char[] line, int start, int length,
+      String type) {
+    if (type.length() != length) {
+      return false;
+    }
+    for (int i = 0; i < length; i++) {
+      if (line[start + i] != type.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  public void reset() throws IOException, UnsupportedOperationException {
+    reader.reset();
+  }
+
+  public void close() throws IOException {
+    reader.close();
+  }
+
+}
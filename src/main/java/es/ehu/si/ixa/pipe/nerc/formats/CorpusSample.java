@@ -3,7 +3,6 @@ package es.ehu.si.ixa.pipe.nerc.formats;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -13,15 +12,23 @@ import java.util.regex.Pattern;
 import opennlp.tools.tokenize.WhitespaceTokenizer;
 import opennlp.tools.util.Span;
 
+/**
+ * A sentence of a corpus with its annotated names. The sample is immutable and
+ * backed by arrays: the tokens and names are copied once when the sample is
+ * created and the accessors return the backing arrays without copying them,
+ * so they must not be modified by the caller.
+ */
 public class CorpusSample {
  
-    private final List<String> sentence;
-    private final List<Span> names;
+    private final String[] sentence;
+    private final Span[] names;
     private final String[][] additionalContext;
     private final boolean isClearAdaptiveData;
 
     /** The a default type value when there is no type in training data. */
     public static final String DEFAULT_TYPE = "default";
+    
+    private static final Span[] NO_NAMES = new Span[0];
 
     
     public CorpusSample(String[] sentence, Span[] names,
@@ -31,19 +38,14 @@ public class CorpusSample {
         throw new IllegalArgumentException("sentence must not be null!");
       }
 
-      if (names == null) {
-        names = new Span[0];
-      }
-
-      this.sentence = Collections.unmodifiableList(new ArrayList<String>(Arrays.asList(sentence)));
-      this.names = Collections.unmodifiableList(new ArrayList<Span>(Arrays.asList(names)));
+      this.sentence = sentence.clone();
+      this.names = names == null ? NO_NAMES : names.clone();
       
       if (additionalContext != null) {
         this.additionalContext = new String[additionalContext.length][];
         
         for (int i = 0; i < additionalContext.length; i++) {
-          this.additionalContext[i] = new String[additionalContext[i].length];
-          System.arraycopy(additionalContext[i], 0, this.additionalContext[i], 0, additionalContext[i].length);
+          this.additionalContext[i] = additionalContext[i].clone();
         }
       }
       else {
@@ -57,13 +59,62 @@ public class CorpusSample {
     public CorpusSample(String[] sentence, Span[] names, boolean clearAdaptiveData) {
       this(sentence, names, null, clearAdaptiveData);
     }
+
+    /**
+     * Creates a sample sharing the sentence of another sample.
+     */
+    private CorpusSample(CorpusSample sample, Span[] names,
+        boolean clearAdaptiveData) {
+      this.sentence = sample.sentence;
+      this.names = names;
+      this.additionalContext = sample.additionalContext;
+      this.isClearAdaptiveData = clearAdaptiveData;
+    }
+
+    /**
+     * Creates a sample with the same sentence and the given names. The
+     * sentence is shared with this sample instead of being copied.
+     *
+     * @param newNames the names of the new sample
+     * @return the new sample
+     */
+    public CorpusSample withNames(Span[] newNames) {
+      return new CorpusSample(this,
+          newNames == null ? NO_NAMES : newNames.clone(), isClearAdaptiveData);
+    }
+
+    /**
+     * Creates a sample with the same sentence and names and the given value for
+     * clearing the adaptive data.
+     *
+     * @param clearAdaptiveData whether the adaptive data must be cleared
+     * @return the new sample, or this one if the value does not change
+     */
+    public CorpusSample withClearAdaptiveData(boolean clearAdaptiveData) {
+      if (clearAdaptiveData == isClearAdaptiveData) {
+        return this;
+      }
+      return new CorpusSample(this, names, clearAdaptiveData);
+    }
     
+    /**
+     * The tokens of the sentence. The array is not copied and must not be
+     * modified.
+     *
+     * @return the tokens
+     */
     public String[] getSentence() {
-      return sentence.toArray(new String[sentence.size()]);
+      return sentence;
     }
 
+    /**
+     * The names of the sentence. The array is not copied and must not be
+     * modified.
+     *
+     * @return the names
+     */
     public Span[] getNames() {
-      return names.toArray(new Span[names.size()]);
+      return names;
     }
 
     public String[][] getAdditionalContext() {
@@ -83,9 +134,9 @@ public class CorpusSample {
       else if (obj instanceof CorpusSample) {
         CorpusSample a = (CorpusSample) obj;
         
-        return Arrays.equals(getSentence(), a.getSentence()) &&
-            Arrays.equals(getNames(), a.getNames()) &&
-            Arrays.equals(getAdditionalContext(), a.getAdditionalContext()) &&
+        return Arrays.equals(sentence, a.sentence) &&
+            Arrays.equals(names, a.names) &&
+            Arrays.deepEquals(additionalContext, a.additionalContext) &&
             isClearAdaptiveDataSet() == a.isClearAdaptiveDataSet();
       }
       else {
@@ -94,6 +145,14 @@ public class CorpusSample {
       
     }
     
+    @Override
+    public int hashCode() {
+      int result = Arrays.hashCode(sentence);
+      result = 31 * result + Arrays.hashCode(names);
+      result = 31 * result + Arrays.deepHashCode(additionalContext);
+      return 31 * result + (isClearAdaptiveData ? 1 : 0);
+    }
+    
     @Override
     public String toString() {
       StringBuilder result = new StringBuilder();
@@ -103,7 +162,7 @@ public class CorpusSample {
       if (isClearAdaptiveDataSet())
         result.append("\n");
       
-      for (int tokenIndex = 0; tokenIndex < sentence.size(); tokenIndex++) {
+      for (int tokenIndex = 0; tokenIndex < sentence.length; tokenIndex++) {
 
         for (Span name : names) {
           if (name.getStart() == tokenIndex) {
@@ -122,14 +181,14 @@ public class CorpusSample {
           }
         }
 
-        result.append(sentence.get(tokenIndex)).append(' ');
+        result.append(sentence[tokenIndex]).append(' ');
       }
 
-      if (sentence.size() > 1)
+      if (sentence.length > 1)
         result.setLength(result.length() - 1);
 
       for (Span name : names) {
-        if (name.getEnd() == sentence.size()) {
+        if (name.getEnd() == sentence.length) {
           result.append(' ').append(CorpusSampleDataStream.END_TAG);
         }
       }
@@ -1,108 +1,202 @@
 package es.ehu.si.ixa.pipe.nerc.formats;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Iterator;
-import java.util.List;
+import java.util.NoSuchElementException;
 
 import es.ehu.si.ixa.pipe.nerc.features.AdaptiveFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+import es.ehu.si.ixa.pipe.nerc.train.BeamNameDecoder;
 import es.ehu.si.ixa.pipe.nerc.train.DefaultNameContextGenerator;
 import es.ehu.si.ixa.pipe.nerc.train.NameClassifier;
 import es.ehu.si.ixa.pipe.nerc.train.NameFinderEventStream;
-import es.ehu.si.ixa.pipe.nerc.train.NameModel;
+import es.ehu.si.ixa.pipe.nerc.train.OutcomeTable;
 
 import opennlp.model.AbstractModel;
 import opennlp.model.Event;
 import opennlp.model.Sequence;
 import opennlp.model.SequenceStream;
+import opennlp.tools.util.FilterObjectStream;
 import opennlp.tools.util.ObjectStream;
 
+/**
+ * The sequences of a corpus for sequence (perceptron) training. The samples
+ * are kept in memory in the compact format of {@link BinaryCorpusSampleStream}
+ * and decoded again on every iteration. The sentences are tagged with the
+ * model being trained by one beam decoder, reused as long as the model
+ * parameters are the same, and with the configured context generator.
+ *
+ * The adaptive data of the features is updated with the gold outcomes of a
+ * sentence once its gold and predicted events have been generated, so both
+ * see the same previous sentences.
+ */
 public class CorpusSampleSequenceStream implements SequenceStream {
 
   private NameContextGenerator pcg;
-  private List<CorpusSample> samples;
-  
+  private byte[] corpus;
+  private int numSamples;
+
+  /**
+   * The decoder of the model being trained, and the parameters it was built
+   * for.
+   */
+  private BeamNameDecoder decoder;
+  private Object decoderParams;
+  private OutcomeTable outcomeTable;
+
+  /**
+   * The sentence and gold outcomes of the last sequence, whose adaptive data
+   * update is pending.
+   */
+  private String[] pendingTokens;
+  private String[] pendingOutcomes;
+
   public CorpusSampleSequenceStream(ObjectStream<CorpusSample> psi) throws IOException {
     this(psi, new DefaultNameContextGenerator((AdaptiveFeatureGenerator) null));
   }
-  
-  public CorpusSampleSequenceStream(ObjectStream<CorpusSample> psi, AdaptiveFeatureGenerator featureGen) 
+
+  public CorpusSampleSequenceStream(ObjectStream<CorpusSample> psi, AdaptiveFeatureGenerator featureGen)
   throws IOException {
     this(psi, new DefaultNameContextGenerator(featureGen));
   }
-  
+
   public CorpusSampleSequenceStream(ObjectStream<CorpusSample> psi, NameContextGenerator pcg)
       throws IOException {
-    samples = new ArrayList<CorpusSample>();
-    
-    CorpusSample sample;
-    while((sample = psi.read()) != null) {
-      samples.add(sample);
-    }
-    
-    System.err.println("Got "+samples.size()+" sequences");
-    
+    // the additional context is not used to train, it is dropped
+    ObjectStream<CorpusSample> counted = new FilterObjectStream<CorpusSample, CorpusSample>(psi) {
+      public CorpusSample read() throws IOException {
+        CorpusSample sample = samples.read();
+        if (sample != null) {
+          numSamples++;
+          if (sample.getAdditionalContext() != null) {
+            sample = new CorpusSample(sample.getSentence(), sample.getNames(),
+                sample.isClearAdaptiveDataSet());
+          }
+        }
+        return sample;
+      }
+    };
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryCorpusSampleStream.write(counted, out);
+    corpus = out.toByteArray();
+
+    System.err.println("Got " + numSamples + " sequences");
+
     this.pcg = pcg;
   }
-  
-  
+
+  /**
+   * Gets the decoder of a model, building it if the model parameters
+   * changed.
+   */
+  private BeamNameDecoder getDecoder(AbstractModel model) {
+    Object params = model.getDataStructures()[0];
+    if (decoder == null || params != decoderParams) {
+      outcomeTable = new OutcomeTable(model);
+      decoder = new BeamNameDecoder(model, pcg, outcomeTable, null,
+          NameClassifier.DEFAULT_BEAM_SIZE);
+      decoderParams = params;
+    }
+    return decoder;
+  }
+
+  /**
+   * Updates the adaptive data with the gold outcomes of the last sequence.
+   */
+  private void applyPendingUpdate() {
+    if (pendingTokens != null) {
+      pcg.updateAdaptiveData(pendingTokens, pendingOutcomes);
+      pendingTokens = null;
+      pendingOutcomes = null;
+    }
+  }
+
+  private static Event[] generateEvents(String[] sentence, String[] tags,
+      NameContextGenerator cg) {
+    Event[] events = new Event[sentence.length];
+    for (int i = 0; i < sentence.length; i++) {
+      // it is safe to pass the tags as previous tags because
+      // the context generator does not look for non predicted tags
+      events[i] = new Event(tags[i], cg.getContext(i, sentence, tags, null));
+    }
+    return events;
+  }
+
   @SuppressWarnings("unchecked")
   public Event[] updateContext(Sequence sequence, AbstractModel model) {
     Sequence<CorpusSample> pss = sequence;
-    NameClassifier tagger = new NameClassifier(new NameModel("x-unspecified", model, Collections.<String, Object>emptyMap(), null));
     String[] sentence = pss.getSource().getSentence();
-    String[] tags = NameFinderEventStream.generateOutcomes(tagger.find(sentence), null, sentence.length);
-    Event[] events = new Event[sentence.length];
-    
-    NameFinderEventStream.generateEvents(sentence,tags,pcg).toArray(events);
-    
+    int[] outcomes = new int[sentence.length];
+    double[] probs = new double[sentence.length];
+    getDecoder(model).decode(sentence, null, outcomes, probs);
+    String[] tags = new String[sentence.length];
+    for (int i = 0; i < sentence.length; i++) {
+      tags[i] = outcomeTable.getOutcome(outcomes[i]);
+    }
+    Event[] events = generateEvents(sentence, tags, pcg);
+    applyPendingUpdate();
     return events;
   }
-  
+
   @SuppressWarnings("unchecked")
   public Iterator<Sequence> iterator() {
-    return new CorpusSampleSequenceIterator(samples.iterator());
+    pcg.clearAdaptiveData();
+    pendingTokens = null;
+    pendingOutcomes = null;
+    try {
+      return new CorpusSampleSequenceIterator(new BinaryCorpusSampleStream(corpus));
+    } catch (IOException e) {
+      // the samples were written by this stream
+      throw new IllegalStateException(e);
+    }
   }
 
-}
+  private class CorpusSampleSequenceIterator implements Iterator<Sequence> {
 
-class CorpusSampleSequenceIterator implements Iterator<Sequence> {
+    private final ObjectStream<CorpusSample> psi;
+    private CorpusSample next;
 
-  private Iterator<CorpusSample> psi;
-  private NameContextGenerator cg;
-  
-  public CorpusSampleSequenceIterator(Iterator<CorpusSample> psi) {
-    this.psi = psi;
-    cg = new DefaultNameContextGenerator(null);
-  }
-  
-  public boolean hasNext() {
-    return psi.hasNext();
-  }
+    public CorpusSampleSequenceIterator(ObjectStream<CorpusSample> psi) {
+      this.psi = psi;
+      advance();
+    }
 
-  public Sequence<CorpusSample> next() {
-    CorpusSample sample = psi.next();
-    
-    String sentence[] = sample.getSentence();
-    String tags[] = NameFinderEventStream.generateOutcomes(sample.getNames(), null, sentence.length);
-    Event[] events = new Event[sentence.length];
-    
-    for (int i=0; i < sentence.length; i++) {
+    private void advance() {
+      try {
+        next = psi.read();
+      } catch (IOException e) {
+        // the samples are read from memory
+        throw new IllegalStateException(e);
+      }
+    }
 
-      // it is safe to pass the tags as previous tags because
-      // the context generator does not look for non predicted tags
-      String[] context = cg.getContext(i, sentence, tags, null);
+    public boolean hasNext() {
+      return next != null;
+    }
 
-      events[i] = new Event(tags[i], context);
+    public Sequence<CorpusSample> next() {
+      if (next == null) {
+        throw new NoSuchElementException();
+      }
+      CorpusSample sample = next;
+      advance();
+
+      applyPendingUpdate();
+      if (sample.isClearAdaptiveDataSet()) {
+        pcg.clearAdaptiveData();
+      }
+      String sentence[] = sample.getSentence();
+      String tags[] = NameFinderEventStream.generateOutcomes(sample.getNames(), null, sentence.length);
+      Event[] events = generateEvents(sentence, tags, pcg);
+      pendingTokens = sentence;
+      pendingOutcomes = tags;
+      return new Sequence<CorpusSample>(events, sample);
     }
-    Sequence<CorpusSample> sequence = new Sequence<CorpusSample>(events,sample);
-    return sequence;
-  }
 
-  public void remove() {
-    throw new UnsupportedOperationException();
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
   }
-  
+
 }
@@ -49,9 +49,10 @@ public class CorpusSampleTypeFilter extends
         }
       }
 
-      return new CorpusSample(sample.getSentence(),
-          filteredNames.toArray(new Span[filteredNames.size()]),
-          sample.isClearAdaptiveDataSet());
+      if (filteredNames.size() == sample.getNames().length) {
+        return sample;
+      }
+      return sample.withNames(filteredNames.toArray(new Span[filteredNames.size()]));
     } else {
       return null;
     }
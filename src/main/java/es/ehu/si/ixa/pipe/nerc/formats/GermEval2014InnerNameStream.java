@@ -18,20 +18,13 @@ package es.ehu.si.ixa.pipe.nerc.formats;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.PrintStream;
-import java.io.UnsupportedEncodingException;
-import java.util.ArrayList;
-import java.util.List;
 
-
-import opennlp.tools.util.InvalidFormatException;
 import opennlp.tools.util.ObjectStream;
-import opennlp.tools.util.PlainTextByLineStream;
-import opennlp.tools.util.Span;
-import opennlp.tools.util.StringUtil;
 
 /**
- * Parser for the GermEval 2014 shared task.
+ * Parser for the inner named entities of the GermEval 2014 shared task. The
+ * lines are parsed by a {@link GermEval2014NestedNameStream}, checking only
+ * the inner tags; use it directly to get both levels from one parse.
  * <p>
  * The data has a #document url tag to mark article boundaries, adaptive data
  * in the feature generators will be cleared before every article.<br>
@@ -47,8 +40,8 @@ import opennlp.tools.util.StringUtil;
 
 public class GermEval2014InnerNameStream implements ObjectStream<CorpusSample> {
 
-  public static final String DOCSTART = "#";
-  private final ObjectStream<String> lineStream;
+  public static final String DOCSTART = GermEval2014NestedNameStream.DOCSTART;
+  private final GermEval2014NestedNameStream nestedStream;
 
   /**
    * Construct a Name Stream from a language and a {@code ObjectStream}.
@@ -56,106 +49,28 @@ public class GermEval2014InnerNameStream implements ObjectStream<CorpusSample> {
    * @param lineStream
    */
   public GermEval2014InnerNameStream(ObjectStream<String> lineStream) {
-    this.lineStream = lineStream;
+    this.nestedStream = new GermEval2014NestedNameStream(lineStream, false, true);
   }
 
   /**
    * Construct a Name Stream from a language and an input stream.
-   * 
    * @param in
    *          an input stream to read data
-   * @throws IOException
-   *           the input stream exception
    */
   public GermEval2014InnerNameStream(InputStream in) {
-
-    try {
-      this.lineStream = new PlainTextByLineStream(in, "UTF-8");
-      System.setOut(new PrintStream(System.out, true, "UTF-8"));
-    } catch (UnsupportedEncodingException e) {
-      // UTF-8 is available on all JVMs, will never happen
-      throw new IllegalStateException(e);
-    }
+    this.nestedStream = new GermEval2014NestedNameStream(in, false, true);
   }
 
   public CorpusSample read() throws IOException {
-
-    List<String> tokens = new ArrayList<String>();
-    List<String> neTypes = new ArrayList<String>();
-    boolean isClearAdaptiveData = false;
-
-    // Empty line indicates end of sentence
-    String line;
-    while ((line = lineStream.read()) != null && !StringUtil.isEmpty(line)) {
-      if (line.startsWith(DOCSTART)) {
-        isClearAdaptiveData = true;
-        continue;
-      }
-      String fields[] = line.split("\t");
-      if (fields.length == 4) {
-        tokens.add(fields[1]);
-        neTypes.add(fields[3]);
-      } else {
-        throw new IOException(
-            "Expected four fields per line in training data, got "
-                + fields.length + " for line '" + line + "'!");
-      }
-    }
-
-    if (tokens.size() > 0) {
-      // convert name tags into spans
-      List<Span> names = new ArrayList<Span>();
-      int beginIndex = -1;
-      int endIndex = -1;
-      for (int i = 0; i < neTypes.size(); i++) {
-        String neTag = neTypes.get(i);
-        if (neTag.startsWith("B-")) {
-          if (beginIndex != -1) {
-            names.add(extract(beginIndex, endIndex, neTypes.get(beginIndex)));
-            beginIndex = -1;
-            endIndex = -1;
-          }
-          beginIndex = i;
-          endIndex = i + 1;
-        } else if (neTag.startsWith("I-")) {
-          endIndex++;
-        } else if (neTag.equals("O")) {
-          if (beginIndex != -1) {
-            names.add(extract(beginIndex, endIndex, neTypes.get(beginIndex)));
-            beginIndex = -1;
-            endIndex = -1;
-          }
-        } else {
-          throw new IOException("Invalid tag: " + neTag);
-        }
-      }
-      // if one span remains, create it here
-      if (beginIndex != -1)
-        names.add(extract(beginIndex, endIndex, neTypes.get(beginIndex)));
-
-      return new CorpusSample(tokens.toArray(new String[tokens.size()]),
-          names.toArray(new Span[names.size()]), isClearAdaptiveData);
-    } else if (line != null) {
-      // Just filter out empty events, if two lines in a row are empty
-      return read();
-    } else {
-      // source stream is not returning anymore lines
-      return null;
-    }
-  }
-
-  static final Span extract(int begin, int end, String beginTag)
-      throws InvalidFormatException {
-
-    String type = beginTag.substring(2);
-    return new Span(begin, end, type);
+    NestedCorpusSample sample = nestedStream.read();
+    return sample == null ? null : sample.getInnerSample();
   }
 
   public void reset() throws IOException, UnsupportedOperationException {
-    lineStream.reset();
+    nestedStream.reset();
   }
 
   public void close() throws IOException {
-    lineStream.close();
+    nestedStream.close();
   }
 }
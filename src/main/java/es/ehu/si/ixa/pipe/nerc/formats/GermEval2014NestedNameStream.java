@@ -0,0 +1,267 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.PlainTextByLineStream;
+import opennlp.tools.util.Span;
+import opennlp.tools.util.StringUtil;
+
+/**
+ * Parser for the GermEval 2014 shared task which reads the outer and the
+ * inner named entities of every sentence at once.
+ * <p>
+ * Every line has four tab separated columns: the token number, the token, the
+ * outer and the inner named entity tag. The columns are split without regular
+ * expressions and the spans of both levels are built while reading the
+ * lines, so the corpus is parsed only once for both levels. A stream can
+ * also parse one level only, whose tags are the only ones checked; the
+ * names of the other level are then empty.
+ * <p>
+ * The data has a #document url tag to mark article boundaries, adaptive data
+ * in the feature generators will be cleared before every article.<br>
+ * <p>
+ * Data can be found on this web site:<br>
+ * https://sites.google.com/site/germeval2014ner/
+ *
+ * @author ragerri
+ */
+public class GermEval2014NestedNameStream implements
+    ObjectStream<NestedCorpusSample> {
+
+  public static final String DOCSTART = "#";
+  private static final int OUTER_COLUMN = 2;
+  private static final int INNER_COLUMN = 3;
+  private static final int NUM_COLUMNS = 4;
+
+  private final ObjectStream<String> lineStream;
+  private final boolean parseOuter;
+  private final boolean parseInner;
+  private final List<String> tokens = new ArrayList<String>();
+  private final Level outer = new Level();
+  private final Level inner = new Level();
+  /**
+   * The entity types, shared by all the spans of the corpus.
+   */
+  private final List<String> types = new ArrayList<String>();
+  private final int[] fieldStarts = new int[NUM_COLUMNS];
+  private final int[] fieldEnds = new int[NUM_COLUMNS];
+
+  /**
+   * The names of one level of the sentence being read.
+   */
+  private static class Level {
+    private final List<Span> names = new ArrayList<Span>();
+    private int beginIndex = -1;
+    private int endIndex = -1;
+    private String type;
+
+    private void clear() {
+      names.clear();
+      beginIndex = -1;
+      endIndex = -1;
+    }
+
+    private void endName() {
+      if (beginIndex != -1) {
+        names.add(new Span(beginIndex, endIndex, type));
+        beginIndex = -1;
+        endIndex = -1;
+      }
+    }
+
+    private Span[] getNames() {
+      endName();
+      return names.toArray(new Span[names.size()]);
+    }
+  }
+
+  /**
+   * Construct a Name Stream from a {@code ObjectStream}.
+   *
+   * @param lineStream the lines of the corpus
+   */
+  public GermEval2014NestedNameStream(ObjectStream<String> lineStream) {
+    this(lineStream, true, true);
+  }
+
+  /**
+   * Construct a Name Stream from a {@code ObjectStream} which only parses
+   * the given levels.
+   *
+   * @param lineStream the lines of the corpus
+   * @param parseOuter whether to parse the outer named entities
+   * @param parseInner whether to parse the inner named entities
+   */
+  public GermEval2014NestedNameStream(ObjectStream<String> lineStream,
+      boolean parseOuter, boolean parseInner) {
+    this.lineStream = lineStream;
+    this.parseOuter = parseOuter;
+    this.parseInner = parseInner;
+  }
+
+  /**
+   * Construct a Name Stream from an input stream.
+   *
+   * @param in an input stream to read data
+   */
+  public GermEval2014NestedNameStream(InputStream in) {
+    this(in, true, true);
+  }
+
+  /**
+   * Construct a Name Stream from an input stream which only parses the given
+   * levels.
+   *
+   * @param in an input stream to read data
+   * @param parseOuter whether to parse the outer named entities
+   * @param parseInner whether to parse the inner named entities
+   */
+  public GermEval2014NestedNameStream(InputStream in, boolean parseOuter,
+      boolean parseInner) {
+    try {
+      this.lineStream = new PlainTextByLineStream(in, "UTF-8");
+    } catch (UnsupportedEncodingException e) {
+      // UTF-8 is available on all JVMs, will never happen
+      throw new IllegalStateException(e);
+    }
+    this.parseOuter = parseOuter;
+    this.parseInner = parseInner;
+  }
+
+  public NestedCorpusSample read() throws IOException {
+
+    tokens.clear();
+    outer.clear();
+    inner.clear();
+    boolean isClearAdaptiveData = false;
+
+    // Empty line indicates end of sentence
+    String line;
+    while ((line = lineStream.read()) != null && !StringUtil.isEmpty(line)) {
+      if (line.startsWith(DOCSTART)) {
+        isClearAdaptiveData = true;
+        continue;
+      }
+      int fields = split(line);
+      if (fields != NUM_COLUMNS) {
+        throw new IOException(
+            "Expected four fields per line in training data, got " + fields
+                + " for line '" + line + "'!");
+      }
+      int index = tokens.size();
+      tokens.add(line.substring(fieldStarts[1], fieldEnds[1]));
+      if (parseOuter) {
+        addTag(outer, line, OUTER_COLUMN, index);
+      }
+      if (parseInner) {
+        addTag(inner, line, INNER_COLUMN, index);
+      }
+    }
+
+    if (tokens.size() > 0) {
+      return new NestedCorpusSample(tokens.toArray(new String[tokens.size()]),
+          outer.getNames(), inner.getNames(), isClearAdaptiveData);
+    } else if (line != null) {
+      // Just filter out empty events, if two lines in a row are empty
+      return read();
+    } else {
+      // source stream is not returning anymore lines
+      return null;
+    }
+  }
+
+  /**
+   * Converts the tag of a token into the spans of a level.
+   */
+  private void addTag(Level level, String line, int column, int index)
+      throws IOException {
+    int tagStart = fieldStarts[column];
+    int tagLength = fieldEnds[column] - tagStart;
+    if (tagLength >= 2 && line.charAt(tagStart) == 'B'
+        && line.charAt(tagStart + 1) == '-') {
+      level.endName();
+      level.beginIndex = index;
+      level.endIndex = index + 1;
+      level.type = getType(line, tagStart + 2, tagLength - 2);
+    } else if (tagLength >= 2 && line.charAt(tagStart) == 'I'
+        && line.charAt(tagStart + 1) == '-') {
+      level.endIndex++;
+    } else if (tagLength == 1 && line.charAt(tagStart) == 'O') {
+      level.endName();
+    } else {
+      throw new IOException("Invalid tag: "
+          + line.substring(tagStart, tagStart + tagLength));
+    }
+  }
+
+  /**
+   * Splits the line at every tab as {@code String.split("\t")} does,
+   * dropping the trailing empty fields.
+   *
+   * @return the number of fields
+   */
+  private int split(String line) {
+    int fields = 0;
+    int start = 0;
+    int nonEmpty = 0;
+    int length = line.length();
+    for (int i = 0; i <= length; i++) {
+      if (i == length || line.charAt(i) == '\t') {
+        if (fields < fieldStarts.length) {
+          fieldStarts[fields] = start;
+          fieldEnds[fields] = i;
+        }
+        fields++;
+        if (i > start) {
+          nonEmpty = fields;
+        }
+        start = i + 1;
+      }
+    }
+    return nonEmpty;
+  }
+
+  /**
+   * Gets the shared type string for the given characters.
+   */
+  private String getType(String line, int start, int length) {
+    for (int i = 0; i < types.size(); i++) {
+      String type = types.get(i);
+      if (type.length() == length && line.regionMatches(start, type, 0, length)) {
+        return type;
+      }
+    }
+    String type = line.substring(start, start + length);
+    types.add(type);
+    return type;
+  }
+
+  public void reset() throws IOException, UnsupportedOperationException {
+    lineStream.reset();
+  }
+
+  public void close() throws IOException {
+    lineStream.close();
+  }
+}
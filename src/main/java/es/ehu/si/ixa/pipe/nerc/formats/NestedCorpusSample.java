@@ -0,0 +1,85 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import opennlp.tools.util.Span;
+
+/**
+ * A sentence with two levels of named entities, such as the outer and the
+ * inner (nested) entities of the GermEval 2014 corpus. Every level is
+ * available as a {@link CorpusSample}; both samples share the same sentence.
+ *
+ * @author ragerri
+ */
+public class NestedCorpusSample {
+
+  private final CorpusSample outerSample;
+  private final CorpusSample innerSample;
+
+  /**
+   * Creates a nested sample.
+   *
+   * @param sentence the tokens
+   * @param outerNames the outer named entities
+   * @param innerNames the inner named entities
+   * @param clearAdaptiveData whether the sentence starts a new document
+   */
+  public NestedCorpusSample(String[] sentence, Span[] outerNames,
+      Span[] innerNames, boolean clearAdaptiveData) {
+    this.outerSample = new CorpusSample(sentence, outerNames, clearAdaptiveData);
+    this.innerSample = outerSample.withNames(innerNames);
+  }
+
+  public String[] getSentence() {
+    return outerSample.getSentence();
+  }
+
+  public Span[] getOuterNames() {
+    return outerSample.getNames();
+  }
+
+  public Span[] getInnerNames() {
+    return innerSample.getNames();
+  }
+
+  public boolean isClearAdaptiveDataSet() {
+    return outerSample.isClearAdaptiveDataSet();
+  }
+
+  /**
+   * Gets the outer level of the sample.
+   *
+   * @return the sentence with the outer named entities
+   */
+  public CorpusSample getOuterSample() {
+    return outerSample;
+  }
+
+  /**
+   * Gets the inner level of the sample.
+   *
+   * @return the sentence with the inner named entities
+   */
+  public CorpusSample getInnerSample() {
+    return innerSample;
+  }
+
+  @Override
+  public String toString() {
+    return outerSample.toString() + "\n" + innerSample.toString();
+  }
+}
@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reads the lines of a UTF-8 file through a {@link FileChannel} with a large
+ * direct buffer. The current line is exposed as a range of a reusable char
+ * array, so no object is allocated per line; callers create strings only for
+ * the parts of the line they keep.
+ */
+class NioLineReader implements Closeable {
+
+  private static final int BUFFER_SIZE = 1 << 20;
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  private final File file;
+  private final ByteBuffer bytes = ByteBuffer.allocateDirect(BUFFER_SIZE);
+  private final CharBuffer chars = CharBuffer.allocate(BUFFER_SIZE);
+  private final CharsetDecoder decoder = UTF_8.newDecoder()
+      .onMalformedInput(CodingErrorAction.REPORT)
+      .onUnmappableCharacter(CodingErrorAction.REPORT);
+  private FileInputStream input;
+  private FileChannel channel;
+  private boolean endOfInput;
+  private char[] line = new char[256];
+  private int lineLength;
+  private long lineNumber;
+
+  NioLineReader(File file) throws IOException {
+    this.file = file;
+    open();
+  }
+
+  private void open() throws IOException {
+    input = new FileInputStream(file);
+    channel = input.getChannel();
+    bytes.clear();
+    chars.clear();
+    chars.flip();
+    decoder.reset();
+    endOfInput = false;
+    lineNumber = 0;
+  }
+
+  /**
+   * Reads the next line, without the line terminator.
+   *
+   * @return false if there are no more lines
+   * @throws IOException if the file can not be read or is not valid UTF-8
+   */
+  boolean readLine() throws IOException {
+    lineLength = 0;
+    boolean found = false;
+    while (true) {
+      if (!chars.hasRemaining() && !fill()) {
+        break;
+      }
+      found = true;
+      char[] buffer = chars.array();
+      int start = chars.position();
+      int end = chars.limit();
+      int newline = start;
+      while (newline < end && buffer[newline] != '\n') {
+        newline++;
+      }
+      append(buffer, start, newline - start);
+      if (newline < end) {
+        chars.position(newline + 1);
+        break;
+      }
+      chars.position(end);
+    }
+    if (!found) {
+      return false;
+    }
+    if (lineLength > 0 && line[lineLength - 1] == '\r') {
+      lineLength--;
+    }
+    lineNumber++;
+    return true;
+  }
+
+  private void append(char[] buffer, int start, int length) {
+    if (lineLength + length > line.length) {
+      char[] larger = new char[Math.max(line.length * 2, lineLength + length)];
+      System.arraycopy(line, 0, larger, 0, lineLength);
+      line = larger;
+    }
+    System.arraycopy(buffer, start, line, lineLength, length);
+    lineLength += length;
+  }
+
+  /**
+   * Decodes the next block of the file into the char buffer.
+   */
+  private boolean fill() throws IOException {
+    if (endOfInput) {
+      return false;
+    }
+    chars.clear();
+    while (true) {
+      if (channel.read(bytes) < 0) {
+        endOfInput = true;
+      }
+      bytes.flip();
+      CoderResult result = decoder.decode(bytes, chars, endOfInput);
+      if (result.isError()) {
+        result.throwException();
+      }
+      bytes.compact();
+      if (endOfInput) {
+        decoder.flush(chars);
+        break;
+      }
+      if (chars.position() > 0) {
+        break;
+      }
+    }
+    chars.flip();
+    return chars.hasRemaining();
+  }
+
+  /**
+   * The characters of the current line, valid until the next call to
+   * {@link #readLine()}.
+   */
+  char[] getLine() {
+    return line;
+  }
+
+  int getLineLength() {
+    return lineLength;
+  }
+
+  long getLineNumber() {
+    return lineNumber;
+  }
+
+  String getLineAsString() {
+    return new String(line, 0, lineLength);
+  }
+
+  boolean startsWith(String prefix) {
+    if (prefix.length() > lineLength) {
+      return false;
+    }
+    for (int i = 0; i < prefix.length(); i++) {
+      if (line[i] != prefix.charAt(i)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void reset() throws IOException {
+    close();
+    open();
+  }
+
+  public void close() throws IOException {
+    input.close();
+  }
+}
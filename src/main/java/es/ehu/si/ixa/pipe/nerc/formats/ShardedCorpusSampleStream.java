@@ -0,0 +1,189 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import opennlp.tools.util.ObjectStream;
+
+/**
+ * Reads a corpus split into several files (shards) concurrently. Every shard
+ * is parsed by its own task into a bounded queue and the samples are returned
+ * shard after shard, in the order of the given files, so the resulting stream
+ * is the same as reading the files one after the other. The first sample of
+ * every shard clears the adaptive data, as each file starts a new document.
+ * The shards are parsed by daemon threads started on the first read, so a
+ * stream which is never read, or not closed, does not keep the JVM alive.
+ *
+ * @author ragerri
+ */
+public class ShardedCorpusSampleStream implements ObjectStream<CorpusSample> {
+
+  /**
+   * Creates the stream reading one shard.
+   */
+  public interface ShardReader {
+
+    ObjectStream<CorpusSample> open(File shard) throws IOException;
+  }
+
+  /**
+   * The number of samples each shard can parse ahead of the reader.
+   */
+  private static final int QUEUE_CAPACITY = 4096;
+
+  /**
+   * Marks the end of a shard in its queue.
+   */
+  private static final Object END_OF_SHARD = new Object();
+
+  /**
+   * Creates the daemon threads parsing the shards.
+   */
+  private static final ThreadFactory DAEMON_THREADS = new ThreadFactory() {
+    private final ThreadFactory threadFactory = Executors.defaultThreadFactory();
+
+    public Thread newThread(Runnable runnable) {
+      Thread thread = threadFactory.newThread(runnable);
+      thread.setDaemon(true);
+      return thread;
+    }
+  };
+
+  private final List<File> shards;
+  private final ShardReader shardReader;
+  private final int threads;
+  private ExecutorService executor;
+  private List<BlockingQueue<Object>> queues;
+  private int currentShard;
+  private boolean firstOfShard;
+
+  /**
+   * Creates a stream over the given shards.
+   *
+   * @param shards the files, in the order in which they are read
+   * @param shardReader the reader for every shard
+   * @param threads the number of shards parsed at the same time
+   */
+  public ShardedCorpusSampleStream(List<File> shards, ShardReader shardReader,
+      int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive!");
+    }
+    this.shards = new ArrayList<File>(shards);
+    this.shardReader = shardReader;
+    this.threads = Math.min(threads, Math.max(1, shards.size()));
+  }
+
+  private void start() {
+    executor = Executors.newFixedThreadPool(threads, DAEMON_THREADS);
+    queues = new ArrayList<BlockingQueue<Object>>(shards.size());
+    // tasks are started in submission order, so a shard is always being
+    // parsed or finished before the reader waits for it
+    for (final File shard : shards) {
+      final BlockingQueue<Object> queue = new ArrayBlockingQueue<Object>(
+          QUEUE_CAPACITY);
+      queues.add(queue);
+      executor.execute(new Runnable() {
+        public void run() {
+          parse(shard, queue);
+        }
+      });
+    }
+    executor.shutdown();
+    currentShard = 0;
+    firstOfShard = true;
+  }
+
+  private void parse(File shard, BlockingQueue<Object> queue) {
+    try {
+      try {
+        ObjectStream<CorpusSample> samples = shardReader.open(shard);
+        try {
+          CorpusSample sample;
+          while ((sample = samples.read()) != null) {
+            queue.put(sample);
+          }
+        } finally {
+          samples.close();
+        }
+        queue.put(END_OF_SHARD);
+      } catch (IOException e) {
+        queue.put(new IOException("Error reading " + shard + ": "
+            + e.getMessage(), e));
+      } catch (RuntimeException e) {
+        queue.put(e);
+      }
+    } catch (InterruptedException e) {
+      // the stream was closed
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  public CorpusSample read() throws IOException {
+    if (executor == null) {
+      start();
+    }
+    while (currentShard < queues.size()) {
+      Object next;
+      try {
+        next = queues.get(currentShard).take();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new IOException("Interrupted while reading " + shards.get(currentShard), e);
+      }
+      if (next == END_OF_SHARD) {
+        queues.set(currentShard, null);
+        currentShard++;
+        firstOfShard = true;
+      } else if (next instanceof IOException) {
+        throw (IOException) next;
+      } else if (next instanceof RuntimeException) {
+        throw (RuntimeException) next;
+      } else {
+        CorpusSample sample = (CorpusSample) next;
+        if (firstOfShard) {
+          firstOfShard = false;
+          return sample.withClearAdaptiveData(true);
+        }
+        return sample;
+      }
+    }
+    return null;
+  }
+
+  public void reset() throws IOException, UnsupportedOperationException {
+    close();
+  }
+
+  public void close() throws IOException {
+    if (executor != null) {
+      executor.shutdownNow();
+      executor = null;
+      queues = null;
+    }
+  }
+
+}
@@ -17,8 +17,10 @@
 package es.ehu.si.ixa.pipe.nerc.train;
 
 import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -31,15 +33,17 @@ import com.google.common.io.Files;
 import opennlp.tools.util.ObjectStream;
 import opennlp.tools.util.TrainingParameters;
 
+import es.ehu.si.ixa.pipe.nerc.CLI;
 import es.ehu.si.ixa.pipe.nerc.eval.NameFinderEvaluator;
 import es.ehu.si.ixa.pipe.nerc.features.AdaptiveFeatureGenerator;
-import es.ehu.si.ixa.pipe.nerc.formats.Conll02NameStream;
-import es.ehu.si.ixa.pipe.nerc.formats.Conll03NameStream;
+import es.ehu.si.ixa.pipe.nerc.formats.BinaryCorpusSampleStream;
+import es.ehu.si.ixa.pipe.nerc.formats.ColumnNameStream;
 import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
 import es.ehu.si.ixa.pipe.nerc.formats.CorpusSampleDataStream;
 import es.ehu.si.ixa.pipe.nerc.formats.CorpusSampleTypeFilter;
 import es.ehu.si.ixa.pipe.nerc.formats.GermEval2014InnerNameStream;
 import es.ehu.si.ixa.pipe.nerc.formats.GermEval2014OuterNameStream;
+import es.ehu.si.ixa.pipe.nerc.formats.ShardedCorpusSampleStream;
 
 /**
  * Abstract class for common training functionalities. Every other trainer class
@@ -80,10 +84,18 @@ public abstract class AbstractTrainer implements Trainer {
    * The corpus format: conll02, conll03, germEvalOuter2014, germEvalInner2014 and opennlp.
    */
   protected String corpusFormat;
+  /**
+   * The number of corpus files parsed concurrently.
+   */
+  protected int readThreads;
   /**
    * features needs to be implemented by any class extending this one.
    */
   private AdaptiveFeatureGenerator features;
+  /**
+   * The feature parameters stored in the trained models, or null.
+   */
+  private byte[] featureDescriptor;
 
   /**
    * Constructs a trainer with training and test data, and with options for
@@ -109,8 +121,9 @@ public abstract class AbstractTrainer implements Trainer {
     this.corpusFormat = InputOutputUtils.getCorpusFormat(params);
     this.trainData = aTrainData;
     this.testData = aTestData;
-    trainSamples = getNameStream(trainData, lang, corpusFormat);
-    testSamples = getNameStream(testData, lang, corpusFormat);
+    this.readThreads = InputOutputUtils.getReadThreads(params);
+    trainSamples = getNameStream(trainData, lang, corpusFormat, readThreads);
+    testSamples = getNameStream(testData, lang, corpusFormat, readThreads);
     this.beamSize = InputOutputUtils.getBeamsize(params);
     if (params.getSettings().get("Types") != null) {
       String netypes = params.getSettings().get("Types");
@@ -149,13 +162,19 @@ public abstract class AbstractTrainer implements Trainer {
     try {
       trainedModel = NameClassifier.train(lang, null, trainSamples, params,
           getFeatures(), resources);
-      NameClassifier nerTagger = new NameClassifier(trainedModel, getFeatures(), beamSize);
+      if (featureDescriptor != null) {
+        trainedModel = trainedModel.updateFeatureGenerator(featureDescriptor);
+      }
+      NameClassifier nerTagger = new NameClassifier(trainedModel, getFeatures(), params);
       nerEvaluator = new NameFinderEvaluator(nerTagger);
       nerEvaluator.evaluate(testSamples);
     } catch (IOException e) {
       System.err.println("IO error while loading traing and test sets!");
       e.printStackTrace();
       System.exit(1);
+    } finally {
+      closeQuietly(trainSamples);
+      closeQuietly(testSamples);
     }
     System.out.println("Final Result: \n" + nerEvaluator.getFMeasure());
     return trainedModel;
@@ -233,38 +252,42 @@ public abstract class AbstractTrainer implements Trainer {
       for (int iteration = start + start; iteration < iterList.size() + start; iteration += iterRange) {
         // reading data for training and test
         ObjectStream<CorpusSample> aTrainSamples = getNameStream(trainData, lang,
-            corpusFormat);
+            corpusFormat, readThreads);
         ObjectStream<CorpusSample> devSamples = getNameStream(devData, lang,
-            corpusFormat);
-
-        // dynamic creation of parameters
-        params.put(TrainingParameters.ITERATIONS_PARAM,
-            Integer.toString(iteration));
-        params.put(TrainingParameters.CUTOFF_PARAM, Integer.toString(cuttOff));
-        System.err.println("Trying with " + iteration + " iterations...");
-
-        // training model
-        NameModel trainedModel = NameClassifier.train(lang, null,
-            aTrainSamples, params, getFeatures(), resources);
-        // evaluate model
-        NameClassifier nerClassifier = new NameClassifier(trainedModel, getFeatures(), beamSize);
-        NameFinderEvaluator nerEvaluator = new NameFinderEvaluator(nerClassifier);
-        nerEvaluator.evaluate(devSamples);
-        double result = nerEvaluator.getFMeasure().getFMeasure();
-        double precision = nerEvaluator.getFMeasure().getPrecisionScore();
-        double recall = nerEvaluator.getFMeasure().getRecallScore();
-        StringBuilder sb = new StringBuilder();
-        sb.append("Iterations: ").append(iteration).append(" cutoff: ")
-            .append(cuttOff).append(" ").append("PRF: ").append(precision)
-            .append(" ").append(recall).append(" ").append(result).append("\n");
-        Files.append( sb.toString(), new File("ner-results.txt"), Charsets.UTF_8);
-        List<Integer> bestParams = new ArrayList<Integer>();
-        bestParams.add(iteration);
-        bestParams.add(cuttOff);
-        results.put(bestParams, result);
-        System.out.println();
-        System.out.println("Iterations: " + iteration + " cutoff: " + cuttOff);
-        System.out.println(nerEvaluator.getFMeasure());
+            corpusFormat, readThreads);
+        try {
+          // dynamic creation of parameters
+          params.put(TrainingParameters.ITERATIONS_PARAM,
+              Integer.toString(iteration));
+          params.put(TrainingParameters.CUTOFF_PARAM, Integer.toString(cuttOff));
+          System.err.println("Trying with " + iteration + " iterations...");
+
+          // training model
+          NameModel trainedModel = NameClassifier.train(lang, null,
+              aTrainSamples, params, getFeatures(), resources);
+          // evaluate model
+          NameClassifier nerClassifier = new NameClassifier(trainedModel, getFeatures(), params);
+          NameFinderEvaluator nerEvaluator = new NameFinderEvaluator(nerClassifier);
+          nerEvaluator.evaluate(devSamples);
+          double result = nerEvaluator.getFMeasure().getFMeasure();
+          double precision = nerEvaluator.getFMeasure().getPrecisionScore();
+          double recall = nerEvaluator.getFMeasure().getRecallScore();
+          StringBuilder sb = new StringBuilder();
+          sb.append("Iterations: ").append(iteration).append(" cutoff: ")
+              .append(cuttOff).append(" ").append("PRF: ").append(precision)
+              .append(" ").append(recall).append(" ").append(result).append("\n");
+          Files.append( sb.toString(), new File("ner-results.txt"), Charsets.UTF_8);
+          List<Integer> bestParams = new ArrayList<Integer>();
+          bestParams.add(iteration);
+          bestParams.add(cuttOff);
+          results.put(bestParams, result);
+          System.out.println();
+          System.out.println("Iterations: " + iteration + " cutoff: " + cuttOff);
+          System.out.println(nerEvaluator.getFMeasure());
+        } finally {
+          closeQuietly(aTrainSamples);
+          closeQuietly(devSamples);
+        }
       }
     }
     // print F1 results by iteration
@@ -278,7 +301,10 @@ public abstract class AbstractTrainer implements Trainer {
   }
 
   /**
-   * Getting the stream with the right corpus format.
+   * Getting the stream with the right corpus format. The input data can be a
+   * file, a comma separated list of files or a directory, whose files are read
+   * in alphabetical order. Several files are parsed concurrently and read as
+   * one corpus, each file starting a new document.
    * @param inputData
    *          the input data
    * @param aLang
@@ -291,14 +317,104 @@ public abstract class AbstractTrainer implements Trainer {
    */
   public static ObjectStream<CorpusSample> getNameStream(final String inputData,
       final String aLang, final String aCorpusFormat) throws IOException {
+    return getNameStream(inputData, aLang, aCorpusFormat, CLI.DEFAULT_READ_THREADS);
+  }
+
+  /**
+   * Getting the stream with the right corpus format, parsing up to the given
+   * number of corpus files concurrently.
+   * @param inputData
+   *          the input data
+   * @param aLang
+   *          the language
+   * @param aCorpusFormat
+   *          the corpus format
+   * @param threads
+   *          the number of files parsed concurrently
+   * @return the stream from the several corpus formats
+   * @throws IOException
+   *           the io exception
+   */
+  public static ObjectStream<CorpusSample> getNameStream(final String inputData,
+      final String aLang, final String aCorpusFormat, final int threads)
+      throws IOException {
+    List<File> shards = getCorpusFiles(inputData);
+    if (shards.size() == 1) {
+      return getNameStream(shards.get(0), aLang, aCorpusFormat);
+    }
+    return new ShardedCorpusSampleStream(shards,
+        new ShardedCorpusSampleStream.ShardReader() {
+          public ObjectStream<CorpusSample> open(File shard) throws IOException {
+            return getNameStream(shard, aLang, aCorpusFormat);
+          }
+        }, threads);
+  }
+
+  /**
+   * Lists the files of a corpus.
+   * @param inputData
+   *          a file, a comma separated list of files or a directory
+   * @return the files
+   * @throws IOException
+   *           if a file does not exist or a directory is empty
+   */
+  private static List<File> getCorpusFiles(final String inputData)
+      throws IOException {
+    List<File> files = new ArrayList<File>();
+    for (String path : inputData.split(",")) {
+      File file = new File(path.trim());
+      if (file.isDirectory()) {
+        File[] children = file.listFiles();
+        if (children == null) {
+          throw new IOException("Could not list the files of " + file);
+        }
+        Arrays.sort(children);
+        int numFiles = files.size();
+        for (File child : children) {
+          if (child.isFile() && !child.isHidden()) {
+            files.add(child);
+          }
+        }
+        if (files.size() == numFiles) {
+          throw new IOException("No corpus files found in " + file);
+        }
+      } else if (file.exists()) {
+        files.add(file);
+      } else {
+        throw new FileNotFoundException(file + " does not exist!");
+      }
+    }
+    if (files.isEmpty()) {
+      throw new IOException("No corpus files found in " + inputData);
+    }
+    return files;
+  }
+
+  /**
+   * Closes a corpus stream, reporting instead of throwing the errors, as the
+   * samples have already been read.
+   */
+  private static void closeQuietly(final ObjectStream<CorpusSample> samples) {
+    try {
+      samples.close();
+    } catch (IOException e) {
+      System.err.println("Could not close the corpus: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Getting the stream of a single corpus file.
+   */
+  private static ObjectStream<CorpusSample> getNameStream(final File input,
+      final String aLang, final String aCorpusFormat) throws IOException {
+    String inputData = input.getPath();
     ObjectStream<CorpusSample> samples = null;
     if (aCorpusFormat.equalsIgnoreCase("conll03")) {
-      ObjectStream<String> nameStream = InputOutputUtils.readInputData(inputData);
-      samples = new Conll03NameStream(aLang, nameStream);
+      samples = ColumnNameStream.createConll03(aLang, input);
     } else if (aCorpusFormat.equalsIgnoreCase("conll02")) {
-      ObjectStream<String> nameStream = InputOutputUtils
-          .readInputData(inputData);
-      samples = new Conll02NameStream(aLang, nameStream);
+      samples = ColumnNameStream.createConll02(aLang, input);
+    } else if (aCorpusFormat.equalsIgnoreCase("binary")) {
+      samples = new BinaryCorpusSampleStream(input);
     } else if (aCorpusFormat.equalsIgnoreCase("germEvalOuter2014")) {
       ObjectStream<String> nameStream = InputOutputUtils
           .readInputData(inputData);
@@ -335,6 +451,15 @@ public abstract class AbstractTrainer implements Trainer {
   public final void setFeatures(final AdaptiveFeatureGenerator aFeatures) {
     this.features = aFeatures;
   }
+  /**
+   * Set the feature parameters to store in the trained models, so that
+   * they can be tagged without the training parameters file.
+   * @param aFeatureDescriptor
+   *          the feature parameters in the properties file format
+   */
+  public final void setFeatureDescriptor(final byte[] aFeatureDescriptor) {
+    this.featureDescriptor = aFeatureDescriptor;
+  }
   /**
    * Get the language.
    * @return the language
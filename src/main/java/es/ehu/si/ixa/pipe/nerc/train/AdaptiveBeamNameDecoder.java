@@ -0,0 +1,78 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.SequenceValidator;
+import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+
+/**
+ * Beam search with an adaptive beam width: the hypotheses whose probability
+ * is below a ratio of the probability of the best hypothesis are dropped,
+ * and at most beam size hypotheses are kept. Where the model is confident,
+ * usually on the tokens outside any entity, a single hypothesis is extended;
+ * the beam only widens where the outcome distribution is flat.
+ *
+ * @author ragerri
+ */
+public class AdaptiveBeamNameDecoder extends BeamNameDecoder {
+
+  /**
+   * The log of the probability ratio to the best hypothesis below which a
+   * hypothesis is dropped.
+   */
+  private final double logRatio;
+
+  /**
+   * Creates an adaptive beam search decoder.
+   *
+   * @param model the model
+   * @param contextGenerator the context generator
+   * @param outcomeTable the outcomes of the model
+   * @param sequenceValidator the validator, or null to use the name finder
+   *          rules of the outcome table
+   * @param beamSize the maximum number of hypotheses kept at every position
+   * @param beamRatio the minimum ratio of the probability of a hypothesis to
+   *          the probability of the best one, between 0 and 1
+   */
+  public AdaptiveBeamNameDecoder(MaxentModel model,
+      NameContextGenerator contextGenerator, OutcomeTable outcomeTable,
+      SequenceValidator<String> sequenceValidator, int beamSize,
+      double beamRatio) {
+    super(model, contextGenerator, outcomeTable, sequenceValidator, beamSize);
+    if (beamRatio <= 0 || beamRatio > 1) {
+      throw new IllegalArgumentException(
+          "beam ratio must be greater than 0 and at most 1!");
+    }
+    this.logRatio = Math.log(beamRatio);
+  }
+
+  protected int selectCandidates(double[] scores, int numCandidates,
+      int[] selected) {
+    int numSelected = super.selectCandidates(scores, numCandidates, selected);
+    if (numSelected == 0) {
+      return 0;
+    }
+    double min = scores[selected[0]] + logRatio;
+    int kept = 1;
+    while (kept < numSelected && scores[selected[kept]] >= min) {
+      kept++;
+    }
+    return kept;
+  }
+
+}
@@ -0,0 +1,268 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.util.Arrays;
+
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.SequenceValidator;
+import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+
+/**
+ * Beam search over outcome indexes. It finds the same sequences as the
+ * OpenNLP {@link opennlp.tools.util.BeamSearch} with the same beam size:
+ * every hypothesis is only extended with the outcomes scoring at least as
+ * much as its beam size best outcome, all the valid outcomes are tried if no
+ * hypothesis could be extended, and the best hypotheses are kept. The
+ * hypotheses of every position are stored in arrays reused from sentence to
+ * sentence.
+ *
+ * @author ragerri
+ */
+public class BeamNameDecoder extends NameDecoder {
+
+  /**
+   * The log score below which a hypothesis is dropped, as in the OpenNLP beam
+   * search.
+   */
+  private static final double MIN_SEQUENCE_SCORE = -100000;
+
+  private final int beamSize;
+
+  /**
+   * The outcome, parent hypothesis and probability of every hypothesis of
+   * every position.
+   */
+  private int[][] hypOutcomes = new int[0][];
+  private int[][] hypParents = new int[0][];
+  private double[][] hypProbs = new double[0][];
+  private double[] hypScores;
+  private double[] nextScores;
+
+  /**
+   * The candidate extensions of the current position.
+   */
+  private int numCandidates;
+  private int[] candParents = new int[64];
+  private int[] candOutcomes = new int[64];
+  private double[] candScores = new double[64];
+  private double[] candProbs = new double[64];
+  /**
+   * The candidates kept, best first.
+   */
+  private int[] selected;
+  private final double[] topScores;
+
+  /**
+   * Creates a beam search decoder.
+   *
+   * @param model the model
+   * @param contextGenerator the context generator
+   * @param outcomeTable the outcomes of the model
+   * @param sequenceValidator the validator, or null to use the name finder
+   *          rules of the outcome table
+   * @param beamSize the number of hypotheses kept at every position
+   */
+  public BeamNameDecoder(MaxentModel model,
+      NameContextGenerator contextGenerator, OutcomeTable outcomeTable,
+      SequenceValidator<String> sequenceValidator, int beamSize) {
+    super(model, contextGenerator, outcomeTable, sequenceValidator);
+    if (beamSize < 1) {
+      throw new IllegalArgumentException("beam size must be positive!");
+    }
+    this.beamSize = beamSize;
+    this.hypScores = new double[beamSize];
+    this.nextScores = new double[beamSize];
+    this.selected = new int[beamSize];
+    this.topScores = new double[beamSize];
+  }
+
+  public int getBeamSize() {
+    return beamSize;
+  }
+
+  public void decode(String[] tokens, Object[] additionalContext,
+      int[] outcomes, double[] probs) {
+    int length = tokens.length;
+    if (length == 0) {
+      return;
+    }
+    startSentence(tokens, additionalContext);
+    ensureCapacity(length);
+
+    // the empty hypothesis before the first token
+    int numHyps = 1;
+    hypScores[0] = 0;
+    for (int i = 0; i < length; i++) {
+      numCandidates = 0;
+      for (int hyp = 0; hyp < numHyps; hyp++) {
+        int po = i > 0 ? hypOutcomes[i - 1][hyp] : -1;
+        int ppo = i > 1 ? hypOutcomes[i - 2][hypParents[i - 1][hyp]] : -1;
+        double[] scores = probabilities(i, po, ppo);
+        double min = kthLargest(scores, beamSize);
+        String[] prefix = hasSequenceValidator() ? history(i, hyp) : null;
+        for (int outcome = 0; outcome < numOutcomes; outcome++) {
+          if (scores[outcome] >= min && isValid(i, po, outcome, prefix)) {
+            addCandidate(hyp, outcome, hypScores[hyp], scores[outcome]);
+          }
+        }
+        if (numCandidates == 0) {
+          for (int outcome = 0; outcome < numOutcomes; outcome++) {
+            if (isValid(i, po, outcome, prefix)) {
+              addCandidate(hyp, outcome, hypScores[hyp], scores[outcome]);
+            }
+          }
+        }
+      }
+      numHyps = select(i);
+      if (numHyps == 0) {
+        throw new IllegalStateException("No valid outcome sequence at token "
+            + i + "!");
+      }
+    }
+
+    // the first hypothesis of the last position is the best one
+    int hyp = 0;
+    for (int i = length - 1; i >= 0; i--) {
+      outcomes[i] = hypOutcomes[i][hyp];
+      probs[i] = hypProbs[i][hyp];
+      hyp = hypParents[i][hyp];
+    }
+  }
+
+  private void ensureCapacity(int length) {
+    if (hypOutcomes.length < length) {
+      int capacity = Math.max(length, hypOutcomes.length * 2);
+      hypOutcomes = new int[capacity][beamSize];
+      hypParents = new int[capacity][beamSize];
+      hypProbs = new double[capacity][beamSize];
+    }
+  }
+
+  /**
+   * Gets the outcomes of a hypothesis, for custom sequence validators.
+   */
+  private String[] history(int index, int hyp) {
+    String[] prefix = new String[index];
+    for (int i = index - 1; i >= 0; i--) {
+      prefix[i] = outcomeTable.getOutcome(hypOutcomes[i][hyp]);
+      hyp = hypParents[i][hyp];
+    }
+    return prefix;
+  }
+
+  /**
+   * The k-th largest score, counting repeated scores, or the smallest score if
+   * there are less than k outcomes.
+   */
+  private double kthLargest(double[] scores, int k) {
+    if (k >= scores.length) {
+      double min = scores[0];
+      for (int i = 1; i < scores.length; i++) {
+        min = Math.min(min, scores[i]);
+      }
+      return min;
+    }
+    int filled = 0;
+    for (int i = 0; i < scores.length; i++) {
+      double score = scores[i];
+      if (filled < k || score > topScores[k - 1]) {
+        int j = filled < k ? filled++ : k - 1;
+        while (j > 0 && topScores[j - 1] < score) {
+          topScores[j] = topScores[j - 1];
+          j--;
+        }
+        topScores[j] = score;
+      }
+    }
+    return topScores[k - 1];
+  }
+
+  private void addCandidate(int parent, int outcome, double parentScore,
+      double prob) {
+    double score = parentScore + Math.log(prob);
+    if (score <= MIN_SEQUENCE_SCORE) {
+      return;
+    }
+    if (numCandidates == candOutcomes.length) {
+      int capacity = numCandidates * 2;
+      candParents = Arrays.copyOf(candParents, capacity);
+      candOutcomes = Arrays.copyOf(candOutcomes, capacity);
+      candScores = Arrays.copyOf(candScores, capacity);
+      candProbs = Arrays.copyOf(candProbs, capacity);
+    }
+    candParents[numCandidates] = parent;
+    candOutcomes[numCandidates] = outcome;
+    candScores[numCandidates] = score;
+    candProbs[numCandidates] = prob;
+    numCandidates++;
+  }
+
+  /**
+   * Keeps the best candidates of a position as its hypotheses, best first.
+   *
+   * @param index the position
+   * @return the number of hypotheses
+   */
+  private int select(int index) {
+    int numSelected = selectCandidates(candScores, numCandidates, selected);
+    int[] outcomes = hypOutcomes[index];
+    int[] parents = hypParents[index];
+    double[] probs = hypProbs[index];
+    for (int hyp = 0; hyp < numSelected; hyp++) {
+      int candidate = selected[hyp];
+      outcomes[hyp] = candOutcomes[candidate];
+      parents[hyp] = candParents[candidate];
+      probs[hyp] = candProbs[candidate];
+      nextScores[hyp] = candScores[candidate];
+    }
+    double[] swap = hypScores;
+    hypScores = nextScores;
+    nextScores = swap;
+    return numSelected;
+  }
+
+  /**
+   * Chooses the candidates which become the hypotheses of a position. By
+   * default the beam size best candidates are kept; subclasses can prune the
+   * beam further.
+   *
+   * @param scores the log score of every candidate
+   * @param numCandidates the number of candidates
+   * @param selected the array to store the indexes of the chosen candidates,
+   *          best first; its length is the beam size
+   * @return the number of chosen candidates
+   */
+  protected int selectCandidates(double[] scores, int numCandidates,
+      int[] selected) {
+    int filled = 0;
+    for (int candidate = 0; candidate < numCandidates; candidate++) {
+      double score = scores[candidate];
+      if (filled < selected.length
+          || score > scores[selected[selected.length - 1]]) {
+        int j = filled < selected.length ? filled++ : selected.length - 1;
+        while (j > 0 && scores[selected[j - 1]] < score) {
+          selected[j] = selected[j - 1];
+          j--;
+        }
+        selected[j] = candidate;
+      }
+    }
+    return filled;
+  }
+
+}
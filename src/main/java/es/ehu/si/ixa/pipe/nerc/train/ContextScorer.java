@@ -0,0 +1,202 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import opennlp.model.AbstractModel;
+import opennlp.model.Context;
+import opennlp.model.IndexHashTable;
+import opennlp.model.MaxentModel;
+
+/**
+ * Evaluates a maxent (GIS) or perceptron model on a context made of static
+ * features, shared by every hypothesis of a token, and a few previous outcome
+ * features. The sums of the parameters of the static features are computed
+ * once per token and every evaluation only adds the outcome features, in the
+ * same order as the model would, so the probabilities are exactly those of
+ * {@link MaxentModel#eval(String[], double[])} on the whole context.
+ * The model is either an OpenNLP {@link AbstractModel} or a
+ * {@link DenseModel}.
+ *
+ * A scorer keeps the static sums of the current token and must not be shared
+ * between threads.
+ *
+ * @author ragerri
+ */
+public class ContextScorer {
+
+  /**
+   * The dense model, or null to use the parameters of the OpenNLP model.
+   */
+  private final DenseModel denseModel;
+  private final Context[] params;
+  private final IndexHashTable<String> pmap;
+  private final int numOutcomes;
+  private final boolean perceptron;
+  private final double correctionConstant;
+  private final double correctionParam;
+
+  /**
+   * The parameter sums and active feature counts of the static context.
+   */
+  private final double[] staticSums;
+  private final int[] staticNumFeats;
+  private final int[] numFeats;
+
+  /**
+   * Creates a scorer for a model.
+   *
+   * @param model a model supported by {@link #isSupported(MaxentModel)}
+   */
+  @SuppressWarnings("unchecked")
+  public ContextScorer(MaxentModel model) {
+    if (!isSupported(model)) {
+      throw new IllegalArgumentException("Unsupported model type: "
+          + model.getClass().getName());
+    }
+    this.numOutcomes = model.getNumOutcomes();
+    if (model instanceof DenseModel) {
+      this.denseModel = (DenseModel) model;
+      this.params = null;
+      this.pmap = null;
+      this.perceptron = denseModel.isPerceptron();
+      this.correctionConstant = denseModel.getCorrectionConstant();
+      this.correctionParam = denseModel.getCorrectionParam();
+    } else {
+      AbstractModel abstractModel = (AbstractModel) model;
+      Object[] data = abstractModel.getDataStructures();
+      this.denseModel = null;
+      this.params = (Context[]) data[0];
+      this.pmap = (IndexHashTable<String>) data[1];
+      this.perceptron = abstractModel.getModelType() == AbstractModel.ModelType.Perceptron;
+      this.correctionConstant = ((Integer) data[3]).doubleValue();
+      this.correctionParam = ((Double) data[4]).doubleValue();
+    }
+    this.staticSums = new double[numOutcomes];
+    this.staticNumFeats = new int[numOutcomes];
+    this.numFeats = new int[numOutcomes];
+  }
+
+  /**
+   * Checks whether a model can be evaluated by a scorer.
+   *
+   * @param model the model
+   * @return true for dense models and GIS and perceptron models
+   */
+  public static boolean isSupported(MaxentModel model) {
+    if (model instanceof DenseModel) {
+      return true;
+    }
+    return model instanceof AbstractModel
+        && DenseModel.isSupported((AbstractModel) model);
+  }
+
+  /**
+   * Sets the static features of the token to evaluate.
+   *
+   * @param staticContext the features which do not depend on the previous
+   *          outcomes
+   */
+  public void setStaticContext(String[] staticContext) {
+    // the uniform prior of GIS models, the perceptron starts from zero
+    double prior = perceptron ? 0 : Math.log(1.0 / numOutcomes);
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      staticSums[oid] = prior;
+      staticNumFeats[oid] = 0;
+    }
+    add(staticContext, staticSums, staticNumFeats);
+  }
+
+  /**
+   * Evaluates the static context followed by the specified features.
+   *
+   * @param outcomeContext the previous outcome features
+   * @param probs the array to store the probability of every outcome
+   */
+  public void eval(String[] outcomeContext, double[] probs) {
+    System.arraycopy(staticSums, 0, probs, 0, numOutcomes);
+    System.arraycopy(staticNumFeats, 0, numFeats, 0, numOutcomes);
+    add(outcomeContext, probs, numFeats);
+    if (perceptron) {
+      normalizePerceptron(probs, numOutcomes);
+    } else {
+      normalizeMaxent(probs, numFeats, numOutcomes, correctionConstant,
+          correctionParam);
+    }
+  }
+
+  private void add(String[] context, double[] sums, int[] feats) {
+    if (denseModel != null) {
+      denseModel.addParameters(context, sums, feats);
+      return;
+    }
+    for (int ci = 0; ci < context.length; ci++) {
+      int predicate = pmap.get(context[ci]);
+      if (predicate >= 0) {
+        Context predParams = params[predicate];
+        int[] activeOutcomes = predParams.getOutcomes();
+        double[] activeParameters = predParams.getParameters();
+        for (int ai = 0; ai < activeOutcomes.length; ai++) {
+          int oid = activeOutcomes[ai];
+          feats[oid]++;
+          sums[oid] += activeParameters[ai];
+        }
+      }
+    }
+  }
+
+  /**
+   * Turns the parameter sums of a GIS model into probabilities.
+   */
+  static void normalizeMaxent(double[] probs, int[] numFeats,
+      int numOutcomes, double correctionConstant, double correctionParam) {
+    double constantInverse = 1.0 / correctionConstant;
+    double normal = 0.0;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      if (correctionParam != 0) {
+        probs[oid] = Math.exp(probs[oid] * constantInverse
+            + ((1.0 - ((double) numFeats[oid] / correctionConstant)) * correctionParam));
+      } else {
+        probs[oid] = Math.exp(probs[oid] * constantInverse);
+      }
+      normal += probs[oid];
+    }
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      probs[oid] /= normal;
+    }
+  }
+
+  /**
+   * Turns the parameter sums of a perceptron model into probabilities.
+   */
+  static void normalizePerceptron(double[] probs, int numOutcomes) {
+    double maxPrior = 1;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      if (maxPrior < Math.abs(probs[oid])) {
+        maxPrior = Math.abs(probs[oid]);
+      }
+    }
+    double normal = 0.0;
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      probs[oid] = Math.exp(probs[oid] / maxPrior);
+      normal += probs[oid];
+    }
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      probs[oid] /= normal;
+    }
+  }
+
+}
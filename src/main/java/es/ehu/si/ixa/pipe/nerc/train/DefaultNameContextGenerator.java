@@ -22,6 +22,13 @@ public class DefaultNameContextGenerator implements NameContextGenerator {
 
   private AdaptiveFeatureGenerator featureGenerators[];
 
+  /**
+   * The token whose shape was computed last, as decoders ask for the outcome
+   * features of the same token once per pair of previous outcomes.
+   */
+  private String shapeToken;
+  private String shape;
+
   @Deprecated
   private static AdaptiveFeatureGenerator windowFeatures = new CachedFeatureGenerator(
       new AdaptiveFeatureGenerator[]{
@@ -100,11 +107,54 @@ public class DefaultNameContextGenerator implements NameContextGenerator {
     if (index > 0) {
       po = preds[index-1];
     }
-    features.add("po=" + po);
-    features.add("pow=" + po + "," + tokens[index]);
-    features.add("powf=" + po + "," + TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]));
-    features.add("ppo=" + ppo);
+    String[] outcomeContext = getOutcomeContext(index, tokens, po, ppo);
+    for (String feature : outcomeContext) {
+      features.add(feature);
+    }
 
     return features.toArray(new String[features.size()]);
   }
+
+  /**
+   * Return the features of the specified index which do not depend on the
+   * previous outcomes, that is, the features of the feature generators. They
+   * are the same for every sequence of outcomes, so decoders can compute them
+   * once per token.
+   * @param index The index of the token in the specified toks array for which the context should be constructed.
+   * @param tokens The tokens of the sentence.
+   * @param additionalContext Addition features which may be based on a context outside of the sentence.
+   *
+   * @return the features which do not depend on the previous outcomes.
+   */
+  public String[] getStaticContext(int index, String[] tokens, Object[] additionalContext) {
+    List<String> features = new ArrayList<String>();
+
+    for (AdaptiveFeatureGenerator featureGenerator : featureGenerators) {
+      featureGenerator.createFeatures(features, tokens, index, null);
+    }
+    return features.toArray(new String[features.size()]);
+  }
+
+  /**
+   * Return the previous outcome features of the specified index. Together with
+   * the static context they make up the context of the token, in the same
+   * order as in {@link #getContext(int, String[], String[], Object[])}.
+   * @param index The index of the token in the specified toks array for which the context should be constructed.
+   * @param tokens The tokens of the sentence.
+   * @param po The previous outcome, other at the start of the sentence.
+   * @param ppo The outcome before the previous one, other if none.
+   *
+   * @return the previous outcome features.
+   */
+  public String[] getOutcomeContext(int index, String[] tokens, String po, String ppo) {
+    if (tokens[index] != shapeToken) {
+      shape = TokenClassFeatureGenerator.tokenShapeFeature(tokens[index]);
+      shapeToken = tokens[index];
+    }
+    return new String[] {
+        "po=" + po,
+        "pow=" + po + "," + tokens[index],
+        "powf=" + po + "," + shape,
+        "ppo=" + ppo };
+  }
 }
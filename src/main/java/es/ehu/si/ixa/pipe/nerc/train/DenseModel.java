@@ -0,0 +1,659 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.text.DecimalFormat;
+import java.util.Arrays;
+
+import opennlp.model.AbstractModel;
+import opennlp.model.Context;
+import opennlp.model.IndexHashTable;
+import opennlp.maxent.GISModel;
+import opennlp.model.MaxentModel;
+import opennlp.perceptron.PerceptronModel;
+import opennlp.tools.util.InvalidFormatException;
+
+/**
+ * A GIS or perceptron model with its parameters laid out in flat arrays. The
+ * predicates are stored in an open addressing hash table, and the outcomes
+ * and parameters of all the predicates in contiguous arrays, so evaluating a
+ * context touches a few arrays instead of one {@link Context} object per
+ * predicate. The parameters are stored as doubles, which gives exactly the
+ * probabilities of the original model, as floats or quantised to 16 or 8 bit
+ * integers. The quantisation step of every predicate is its largest absolute
+ * parameter over the largest integer, so the parameters of a predicate keep
+ * their relative precision even if other predicates have much larger weights.
+ *
+ * @author ragerri
+ */
+public class DenseModel implements MaxentModel {
+
+  public static final String DOUBLE = "double";
+  public static final String FLOAT = "float";
+  public static final String INT16 = "int16";
+  public static final String INT8 = "int8";
+
+  /**
+   * The magic number at the start of a serialised model: "NERD".
+   */
+  private static final int MAGIC = 0x4E455244;
+  private static final int VERSION = 1;
+  private static final String[] PRECISIONS = { DOUBLE, FLOAT, INT16, INT8 };
+  private static final Charset UTF8 = Charset.forName("UTF-8");
+
+  private final String[] outcomeNames;
+  private final boolean perceptron;
+  private final int correctionConstant;
+  private final double correctionParam;
+  private final String precision;
+
+  /**
+   * The predicates, in an open addressing table of a power of two size, with
+   * their hash codes and ids; the id of an empty slot is -1. The predicates of
+   * a deserialised model are only decoded from their UTF-8 bytes when a
+   * lookup finds their hash code.
+   */
+  private final String[] keys;
+  private final int[] hashes;
+  private final int[] ids;
+  private final int mask;
+  private final int numPredicates;
+  /**
+   * The UTF-8 bytes of the predicates of a deserialised model, by id, or null.
+   */
+  private byte[] predicateBytes;
+  private int[] predicateOffsets;
+
+  /**
+   * The outcomes and parameters of predicate p are in the positions from
+   * offsets[p] to offsets[p + 1] of the outcomes and parameter arrays.
+   */
+  private final int[] offsets;
+  private final int[] outcomes;
+  private double[] doubleParams;
+  private float[] floatParams;
+  private short[] shortParams;
+  private byte[] byteParams;
+  /**
+   * The value of a quantisation step of every predicate, for the integer
+   * precisions.
+   */
+  private double[] scales;
+
+  /**
+   * Converts a GIS or perceptron model.
+   *
+   * @param model the model
+   * @param precision {@link #DOUBLE}, {@link #FLOAT}, {@link #INT16} or
+   *          {@link #INT8}
+   */
+  @SuppressWarnings("unchecked")
+  public DenseModel(AbstractModel model, String precision) {
+    if (!isSupported(model)) {
+      throw new IllegalArgumentException("Unsupported model type: "
+          + model.getModelType());
+    }
+    checkPrecision(precision);
+    Object[] data = model.getDataStructures();
+    Context[] params = (Context[]) data[0];
+    IndexHashTable<String> pmap = (IndexHashTable<String>) data[1];
+    String[] predicates = new String[pmap.size()];
+    pmap.toArray(predicates);
+
+    this.outcomeNames = ((String[]) data[2]).clone();
+    this.perceptron = model.getModelType() == AbstractModel.ModelType.Perceptron;
+    this.correctionConstant = (Integer) data[3];
+    this.correctionParam = (Double) data[4];
+    this.precision = precision;
+    this.numPredicates = predicates.length;
+
+    int capacity = Integer.highestOneBit(Math.max(2, numPredicates * 2 - 1)) << 1;
+    this.keys = new String[capacity];
+    this.hashes = new int[capacity];
+    this.ids = new int[capacity];
+    this.mask = capacity - 1;
+    Arrays.fill(ids, -1);
+    for (int p = 0; p < predicates.length; p++) {
+      put(predicates[p], p);
+    }
+
+    this.offsets = new int[numPredicates + 1];
+    for (int p = 0; p < numPredicates; p++) {
+      offsets[p + 1] = offsets[p] + params[p].getOutcomes().length;
+    }
+    this.outcomes = new int[offsets[numPredicates]];
+    double[] values = new double[offsets[numPredicates]];
+    for (int p = 0; p < numPredicates; p++) {
+      System.arraycopy(params[p].getOutcomes(), 0, outcomes, offsets[p],
+          params[p].getOutcomes().length);
+      System.arraycopy(params[p].getParameters(), 0, values, offsets[p],
+          params[p].getParameters().length);
+    }
+    setParameters(values);
+  }
+
+  /**
+   * Checks whether a model can be converted.
+   *
+   * @param model the model
+   * @return true for GIS and perceptron models
+   */
+  public static boolean isSupported(AbstractModel model) {
+    return model.getModelType() == AbstractModel.ModelType.Maxent
+        || model.getModelType() == AbstractModel.ModelType.Perceptron;
+  }
+
+  private static void checkPrecision(String precision) {
+    if (!DOUBLE.equals(precision) && !FLOAT.equals(precision)
+        && !INT16.equals(precision) && !INT8.equals(precision)) {
+      throw new IllegalArgumentException("Unknown model precision: "
+          + precision);
+    }
+  }
+
+  private void put(String predicate, int id) {
+    int hash = predicate.hashCode();
+    int slot = spread(hash) & mask;
+    while (ids[slot] != -1) {
+      slot = (slot + 1) & mask;
+    }
+    keys[slot] = predicate;
+    hashes[slot] = hash;
+    ids[slot] = id;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  /**
+   * Gets the predicate of a slot, decoding it if needed.
+   */
+  private String getKey(int slot) {
+    String key = keys[slot];
+    if (key == null) {
+      int id = ids[slot];
+      key = new String(predicateBytes, predicateOffsets[id],
+          predicateOffsets[id + 1] - predicateOffsets[id], UTF8);
+      keys[slot] = key;
+    }
+    return key;
+  }
+
+  /**
+   * Gets the id of a predicate.
+   *
+   * @param predicate the predicate
+   * @return the id, or -1 if the predicate is not in the model
+   */
+  public int getPredicateId(String predicate) {
+    int hash = predicate.hashCode();
+    int slot = spread(hash) & mask;
+    while (ids[slot] != -1) {
+      if (hashes[slot] == hash && getKey(slot).equals(predicate)) {
+        return ids[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+    return -1;
+  }
+
+  private void setParameters(double[] values) {
+    if (DOUBLE.equals(precision)) {
+      doubleParams = values;
+    } else if (FLOAT.equals(precision)) {
+      floatParams = new float[values.length];
+      for (int i = 0; i < values.length; i++) {
+        floatParams[i] = (float) values[i];
+      }
+    } else {
+      int levels = INT16.equals(precision) ? Short.MAX_VALUE : Byte.MAX_VALUE;
+      scales = new double[numPredicates];
+      if (INT16.equals(precision)) {
+        shortParams = new short[values.length];
+      } else {
+        byteParams = new byte[values.length];
+      }
+      for (int p = 0; p < numPredicates; p++) {
+        double max = 0;
+        for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+          max = Math.max(max, Math.abs(values[i]));
+        }
+        double scale = max == 0 ? 1 : max / levels;
+        scales[p] = scale;
+        for (int i = offsets[p]; i < offsets[p + 1]; i++) {
+          if (shortParams != null) {
+            shortParams[i] = (short) Math.round(values[i] / scale);
+          } else {
+            byteParams[i] = (byte) Math.round(values[i] / scale);
+          }
+        }
+      }
+    }
+  }
+
+  /**
+   * Gets the value of a parameter of a predicate.
+   *
+   * @param predicate the predicate id
+   * @param i the position of the parameter in the parameter arrays
+   */
+  private double getParameter(int predicate, int i) {
+    if (doubleParams != null) {
+      return doubleParams[i];
+    } else if (floatParams != null) {
+      return floatParams[i];
+    } else if (shortParams != null) {
+      return shortParams[i] * scales[predicate];
+    }
+    return byteParams[i] * scales[predicate];
+  }
+
+  public String getPrecision() {
+    return precision;
+  }
+
+  public boolean isPerceptron() {
+    return perceptron;
+  }
+
+  public int getCorrectionConstant() {
+    return correctionConstant;
+  }
+
+  public double getCorrectionParam() {
+    return correctionParam;
+  }
+
+  public int getNumPredicates() {
+    return numPredicates;
+  }
+
+  /**
+   * Adds the parameters of the predicates of a context to the outcome sums,
+   * counting the active features of every outcome.
+   *
+   * @param context the predicates
+   * @param sums the sum of every outcome
+   * @param numFeats the number of active features of every outcome
+   */
+  public void addParameters(String[] context, double[] sums, int[] numFeats) {
+    for (int ci = 0; ci < context.length; ci++) {
+      int predicate = getPredicateId(context[ci]);
+      if (predicate >= 0) {
+        int end = offsets[predicate + 1];
+        if (doubleParams != null) {
+          for (int ai = offsets[predicate]; ai < end; ai++) {
+            numFeats[outcomes[ai]]++;
+            sums[outcomes[ai]] += doubleParams[ai];
+          }
+        } else {
+          for (int ai = offsets[predicate]; ai < end; ai++) {
+            numFeats[outcomes[ai]]++;
+            sums[outcomes[ai]] += getParameter(predicate, ai);
+          }
+        }
+      }
+    }
+  }
+
+  public double[] eval(String[] context) {
+    return eval(context, new double[outcomeNames.length]);
+  }
+
+  public double[] eval(String[] context, float[] values) {
+    return eval(context, values, new double[outcomeNames.length]);
+  }
+
+  public double[] eval(String[] context, double[] probs) {
+    return eval(context, null, probs);
+  }
+
+  /**
+   * Evaluates a context with feature values.
+   *
+   * @param context the predicates
+   * @param values the value of every predicate, or null for ones
+   * @param probs the array to store the outcome probabilities
+   * @return the outcome probabilities
+   */
+  public double[] eval(String[] context, float[] values, double[] probs) {
+    int numOutcomes = outcomeNames.length;
+    int[] numFeats = new int[numOutcomes];
+    double prior = perceptron ? 0 : Math.log(1.0 / numOutcomes);
+    for (int oid = 0; oid < numOutcomes; oid++) {
+      probs[oid] = prior;
+    }
+    if (values == null) {
+      addParameters(context, probs, numFeats);
+    } else {
+      for (int ci = 0; ci < context.length; ci++) {
+        int predicate = getPredicateId(context[ci]);
+        if (predicate >= 0) {
+          for (int ai = offsets[predicate]; ai < offsets[predicate + 1]; ai++) {
+            numFeats[outcomes[ai]]++;
+            probs[outcomes[ai]] += getParameter(predicate, ai) * values[ci];
+          }
+        }
+      }
+    }
+    if (perceptron) {
+      ContextScorer.normalizePerceptron(probs, numOutcomes);
+    } else {
+      ContextScorer.normalizeMaxent(probs, numFeats, numOutcomes,
+          correctionConstant, correctionParam);
+    }
+    return probs;
+  }
+
+  public String getBestOutcome(double[] ocs) {
+    int best = 0;
+    for (int i = 1; i < ocs.length; i++) {
+      if (ocs[i] > ocs[best]) {
+        best = i;
+      }
+    }
+    return outcomeNames[best];
+  }
+
+  public String getAllOutcomes(double[] ocs) {
+    if (ocs.length != outcomeNames.length) {
+      return "The double array sent as a parameter to DenseModel.getAllOutcomes() must not have been produced by this model.";
+    }
+    DecimalFormat df = new DecimalFormat("0.0000");
+    StringBuilder sb = new StringBuilder(ocs.length * 2);
+    sb.append(outcomeNames[0]).append("[").append(df.format(ocs[0])).append("]");
+    for (int i = 1; i < ocs.length; i++) {
+      sb.append("  ").append(outcomeNames[i]).append("[").append(df.format(ocs[i])).append("]");
+    }
+    return sb.toString();
+  }
+
+  public String getOutcome(int i) {
+    return outcomeNames[i];
+  }
+
+  public int getIndex(String outcome) {
+    for (int i = 0; i < outcomeNames.length; i++) {
+      if (outcomeNames[i].equals(outcome)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  public int getNumOutcomes() {
+    return outcomeNames.length;
+  }
+
+  /**
+   * Gets the hashes of the predicates of the model, without decoding them.
+   *
+   * @return the {@link String#hashCode()} of every predicate
+   */
+  public int[] getPredicateHashes() {
+    int[] predicateHashes = new int[numPredicates];
+    for (int slot = 0; slot < ids.length; slot++) {
+      if (ids[slot] != -1) {
+        predicateHashes[ids[slot]] = hashes[slot];
+      }
+    }
+    return predicateHashes;
+  }
+
+  /**
+   * Gets the predicates of the model, indexed by predicate id.
+   *
+   * @return the predicates
+   */
+  public String[] getPredicates() {
+    String[] predicates = new String[numPredicates];
+    for (int slot = 0; slot < ids.length; slot++) {
+      if (ids[slot] != -1) {
+        predicates[ids[slot]] = getKey(slot);
+      }
+    }
+    return predicates;
+  }
+
+  /**
+   * Returns the model in the layout of {@link AbstractModel}: the parameters
+   * of every predicate, the predicate index, the outcome names, the correction
+   * constant and the correction parameter. The structures are built on every
+   * call.
+   */
+  public Object[] getDataStructures() {
+    Context[] params = new Context[numPredicates];
+    for (int p = 0; p < numPredicates; p++) {
+      int length = offsets[p + 1] - offsets[p];
+      int[] predOutcomes = new int[length];
+      double[] predParams = new double[length];
+      for (int ai = 0; ai < length; ai++) {
+        predOutcomes[ai] = outcomes[offsets[p] + ai];
+        predParams[ai] = getParameter(p, offsets[p] + ai);
+      }
+      params[p] = new Context(predOutcomes, predParams);
+    }
+    Object[] data = new Object[5];
+    data[0] = params;
+    data[1] = new IndexHashTable<String>(getPredicates(), 0.7);
+    data[2] = outcomeNames.clone();
+    data[3] = Integer.valueOf(correctionConstant);
+    data[4] = Double.valueOf(correctionParam);
+    return data;
+  }
+
+  /**
+   * Converts this model back into an OpenNLP GIS or perceptron model.
+   *
+   * @return the model
+   */
+  public AbstractModel toAbstractModel() {
+    Object[] data = getDataStructures();
+    Context[] params = (Context[]) data[0];
+    String[] outcomeLabels = (String[]) data[2];
+    if (perceptron) {
+      return new PerceptronModel(params, getPredicates(), outcomeLabels);
+    }
+    return new GISModel(params, getPredicates(), outcomeLabels,
+        correctionConstant, correctionParam);
+  }
+
+  /**
+   * Creates a model from its deserialised arrays.
+   */
+  private DenseModel(String[] outcomeNames, boolean perceptron,
+      int correctionConstant, double correctionParam, String precision,
+      int numPredicates, int[] hashes, int[] ids, byte[] predicateBytes,
+      int[] predicateOffsets, int[] offsets, int[] outcomes) {
+    this.outcomeNames = outcomeNames;
+    this.perceptron = perceptron;
+    this.correctionConstant = correctionConstant;
+    this.correctionParam = correctionParam;
+    this.precision = precision;
+    this.numPredicates = numPredicates;
+    this.keys = new String[ids.length];
+    this.hashes = hashes;
+    this.ids = ids;
+    this.mask = ids.length - 1;
+    this.predicateBytes = predicateBytes;
+    this.predicateOffsets = predicateOffsets;
+    this.offsets = offsets;
+    this.outcomes = outcomes;
+  }
+
+  /**
+   * Writes the model in a binary format made of big endian arrays which
+   * {@link #deserialize(byte[])} reads in bulk.
+   *
+   * @param out the output; it is not closed
+   * @throws IOException if the model can not be written
+   */
+  public void serialize(OutputStream out) throws IOException {
+    DataOutputStream output = new DataOutputStream(out);
+    output.writeInt(MAGIC);
+    output.writeInt(VERSION);
+    output.writeByte(Arrays.asList(PRECISIONS).indexOf(precision));
+    output.writeBoolean(perceptron);
+    output.writeInt(correctionConstant);
+    output.writeDouble(correctionParam);
+    output.writeInt(outcomeNames.length);
+    for (String outcome : outcomeNames) {
+      writeBytes(output, outcome.getBytes(UTF8));
+    }
+
+    // the predicates by id
+    String[] predicates = getPredicates();
+    byte[][] encoded = new byte[numPredicates][];
+    int[] byteOffsets = new int[numPredicates + 1];
+    for (int p = 0; p < numPredicates; p++) {
+      encoded[p] = predicates[p].getBytes(UTF8);
+      byteOffsets[p + 1] = byteOffsets[p] + encoded[p].length;
+    }
+    output.writeInt(numPredicates);
+    writeInts(output, byteOffsets);
+    for (byte[] bytes : encoded) {
+      output.write(bytes);
+    }
+    output.writeInt(ids.length);
+    writeInts(output, hashes);
+    writeInts(output, ids);
+
+    writeInts(output, offsets);
+    writeInts(output, outcomes);
+    if (scales != null) {
+      for (double scale : scales) {
+        output.writeDouble(scale);
+      }
+    }
+    if (doubleParams != null) {
+      for (double param : doubleParams) {
+        output.writeDouble(param);
+      }
+    } else if (floatParams != null) {
+      for (float param : floatParams) {
+        output.writeFloat(param);
+      }
+    } else if (shortParams != null) {
+      for (short param : shortParams) {
+        output.writeShort(param);
+      }
+    } else {
+      output.write(byteParams);
+    }
+    output.flush();
+  }
+
+  private static void writeBytes(DataOutputStream output, byte[] bytes)
+      throws IOException {
+    output.writeInt(bytes.length);
+    output.write(bytes);
+  }
+
+  private static void writeInts(DataOutputStream output, int[] values)
+      throws IOException {
+    for (int value : values) {
+      output.writeInt(value);
+    }
+  }
+
+  /**
+   * Reads a model written by {@link #serialize(OutputStream)}. The arrays are
+   * copied in bulk and the predicates are decoded when first looked up.
+   *
+   * @param bytes the serialised model
+   * @return the model
+   * @throws InvalidFormatException if the bytes are not a serialised model
+   */
+  public static DenseModel deserialize(byte[] bytes)
+      throws InvalidFormatException {
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    try {
+      if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+        throw new InvalidFormatException("Not a dense name finder model!");
+      }
+      int precisionCode = buffer.get();
+      if (precisionCode < 0 || precisionCode >= PRECISIONS.length) {
+        throw new InvalidFormatException("Unknown model precision: "
+            + precisionCode);
+      }
+      String precision = PRECISIONS[precisionCode];
+      boolean perceptron = buffer.get() != 0;
+      int correctionConstant = buffer.getInt();
+      double correctionParam = buffer.getDouble();
+      String[] outcomeNames = new String[buffer.getInt()];
+      for (int i = 0; i < outcomeNames.length; i++) {
+        byte[] outcome = new byte[buffer.getInt()];
+        buffer.get(outcome);
+        outcomeNames[i] = new String(outcome, UTF8);
+      }
+
+      int numPredicates = buffer.getInt();
+      int[] predicateOffsets = readInts(buffer, numPredicates + 1);
+      byte[] predicateBytes = new byte[predicateOffsets[numPredicates]];
+      buffer.get(predicateBytes);
+      int capacity = buffer.getInt();
+      if (Integer.bitCount(capacity) != 1) {
+        throw new InvalidFormatException("Corrupt predicate table!");
+      }
+      int[] hashes = readInts(buffer, capacity);
+      int[] ids = readInts(buffer, capacity);
+
+      int[] offsets = readInts(buffer, numPredicates + 1);
+      int numParams = offsets[numPredicates];
+      int[] outcomes = readInts(buffer, numParams);
+      DenseModel model = new DenseModel(outcomeNames, perceptron,
+          correctionConstant, correctionParam, precision, numPredicates,
+          hashes, ids, predicateBytes, predicateOffsets, offsets, outcomes);
+      if (INT16.equals(precision) || INT8.equals(precision)) {
+        model.scales = new double[numPredicates];
+        buffer.asDoubleBuffer().get(model.scales);
+        buffer.position(buffer.position() + numPredicates * 8);
+      }
+      if (DOUBLE.equals(precision)) {
+        model.doubleParams = new double[numParams];
+        buffer.asDoubleBuffer().get(model.doubleParams);
+      } else if (FLOAT.equals(precision)) {
+        model.floatParams = new float[numParams];
+        buffer.asFloatBuffer().get(model.floatParams);
+      } else if (INT16.equals(precision)) {
+        model.shortParams = new short[numParams];
+        buffer.asShortBuffer().get(model.shortParams);
+      } else {
+        model.byteParams = new byte[numParams];
+        buffer.get(model.byteParams);
+      }
+      return model;
+    } catch (BufferUnderflowException e) {
+      throw new InvalidFormatException("Truncated dense name finder model!");
+    }
+  }
+
+  private static int[] readInts(ByteBuffer buffer, int length) {
+    int[] values = new int[length];
+    buffer.asIntBuffer().get(values);
+    buffer.position(buffer.position() + length * 4);
+    return values;
+  }
+
+}
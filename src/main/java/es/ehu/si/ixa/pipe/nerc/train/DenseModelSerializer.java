@@ -0,0 +1,45 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.model.ArtifactSerializer;
+import opennlp.tools.util.model.ModelUtil;
+
+/**
+ * Reads and writes the {@link DenseModel} artifacts of a {@link NameModel}.
+ * The whole zip entry is read at once and its arrays are decoded in bulk.
+ *
+ * @author ragerri
+ */
+public class DenseModelSerializer implements ArtifactSerializer<DenseModel> {
+
+  public DenseModel create(InputStream in) throws IOException,
+      InvalidFormatException {
+    return DenseModel.deserialize(ModelUtil.read(in));
+  }
+
+  public void serialize(DenseModel artifact, OutputStream out)
+      throws IOException {
+    artifact.serialize(out);
+  }
+
+}
@@ -16,9 +16,12 @@
 
 package es.ehu.si.ixa.pipe.nerc.train;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
 
 import opennlp.tools.util.TrainingParameters;
 import es.ehu.si.ixa.pipe.nerc.dict.BrownCluster;
@@ -29,19 +32,23 @@ import es.ehu.si.ixa.pipe.nerc.features.AdaptiveFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.BigramClassFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.CachedFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.CharacterNgramFeatureGenerator;
-import es.ehu.si.ixa.pipe.nerc.features.DictionaryFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.DictionariesFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.DistSimFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.FivegramClassFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.FourgramClassFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.OutcomePriorFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.Prefix34FeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.PredicateFilter;
 import es.ehu.si.ixa.pipe.nerc.features.PreviousMapFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.SentenceFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.SharedFeatureCache;
+import es.ehu.si.ixa.pipe.nerc.features.SharedFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.SuffixFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.TokenClassFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.TokenFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.TrigramClassFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.WindowFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.WordFeatureCacheGenerator;
 
 /**
  * Training NER based on Apache OpenNLP Machine Learning API for English. This
@@ -74,33 +81,27 @@ public class FixedTrainer extends AbstractTrainer {
   public static final String CHAR_NGRAM_RANGE = "2:5";
   public static final String DEFAULT_WINDOW = "2:2";
   /**
-   * The {@link Dictionaries} contained in the given directory.
+   * The parameters which define the features, stored in the models. The
+   * paths of the lexicons are not stored: they are always taken from the
+   * parameters of whoever uses the model.
    */
-  private static Dictionaries dictionaries;
+  public static final String[] FEATURE_PARAMETERS = { "Window",
+      "TokenFeatures", "TokenClassFeatures", "OutcomePriorFeatures",
+      "PreviousMapFeatures", "SentenceFeatures", "PrefixFeatures",
+      "SuffixFeatures", "BigramClassFeatures", "TrigramClassFeatures",
+      "FourgramClassFeatures", "FivegramClassFeatures", "CharNgramFeatures",
+      "CharNgramFeaturesRange", "DictionaryFeatures", "DistSimFeatures",
+      "BrownClusterFeatures" };
   /**
-   * A {@link Dictionary} object.
+   * The lexicons loaded, by path, shared by every trainer so that models
+   * using the same lexicons load them once.
    */
-  private static Dictionary dictionary;
-  /**
-   * The prefix to be used in the {@link DictionaryFeatureGenerator}.
-   */
-  private static String prefix;
-  /**
-   * The clustering lexicon.
-   */
-  private static ClarkCluster distSimCluster;
-  /**
-   * The clustering dictionary;
-   */
-  private static Dictionary distSimLexicon;
-  /**
-   * The brown cluster.
-   */
-  private static BrownCluster brownCluster;
-  /**
-   * The clustering dictionary;
-   */
-  private static boolean brownFeatures = false;
+  private static ConcurrentHashMap<String, Dictionaries> dictionariesByPath =
+      new ConcurrentHashMap<String, Dictionaries>();
+  private static ConcurrentHashMap<String, ClarkCluster> distSimClustersByPath =
+      new ConcurrentHashMap<String, ClarkCluster>();
+  private static ConcurrentHashMap<String, BrownCluster> brownClustersByPath =
+      new ConcurrentHashMap<String, BrownCluster>();
 
   /**
    * Construct a trainer based on features specified in the trainParams.txt
@@ -112,6 +113,7 @@ public class FixedTrainer extends AbstractTrainer {
     super(trainData, testData, params);
     
     setFeatures(createFeatureGenerator(params));
+    setFeatureDescriptor(createFeatureDescriptor(params));
   }
 
   /**
@@ -126,6 +128,32 @@ public class FixedTrainer extends AbstractTrainer {
     setFeatures(createFeatureGenerator(params));
   }
 
+  /**
+   * Serialises the feature parameters as a properties file, to be stored in
+   * the generator descriptor of the trained model.
+   * 
+   * @param params
+   *          the training parameters
+   * @return the feature parameters in the properties file format
+   */
+  public static byte[] createFeatureDescriptor(TrainingParameters params) {
+    Properties features = new Properties();
+    for (String key : FEATURE_PARAMETERS) {
+      String value = params.getSettings().get(key);
+      if (value != null) {
+        features.setProperty(key, value);
+      }
+    }
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    try {
+      features.store(out, "ixa-pipe-nerc features");
+    } catch (IOException e) {
+      // a byte array output stream does not throw
+      throw new IllegalStateException(e);
+    }
+    return out.toByteArray();
+  }
+
   /*
    * (non-Javadoc)
    * 
@@ -134,40 +162,81 @@ public class FixedTrainer extends AbstractTrainer {
    */
   public final AdaptiveFeatureGenerator createFeatureGenerator(
       TrainingParameters params) {
-    List<AdaptiveFeatureGenerator> featureList = createFeatureList(params);
+    return createFeatureGenerator(params, null);
+  }
+
+  /**
+   * Creates the feature generator of a model tagged together with other
+   * models, which shares the features depending on the tokens only with the
+   * feature generators of the other models created with the same cache.
+   * 
+   * @param params
+   *          the feature parameters of the model
+   * @param cache
+   *          the cache shared by the models, or null to share nothing
+   * @return the feature generator
+   */
+  public final AdaptiveFeatureGenerator createFeatureGenerator(
+      TrainingParameters params, SharedFeatureCache cache) {
+    return createFeatureGenerator(params, cache, null);
+  }
+
+  /**
+   * Creates the feature generator to tag with the given models, which skips
+   * the n-gram features that are not predicates of the models.
+   * 
+   * @param params
+   *          the feature parameters of the model
+   * @param cache
+   *          the cache shared by the models, or null to share nothing
+   * @param filter
+   *          the predicates of all the models sharing the cache, or null to
+   *          generate every feature
+   * @return the feature generator
+   */
+  public final AdaptiveFeatureGenerator createFeatureGenerator(
+      TrainingParameters params, SharedFeatureCache cache, PredicateFilter filter) {
+    List<AdaptiveFeatureGenerator> featureList = createFeatureList(params, cache, filter);
     AdaptiveFeatureGenerator[] featuresArray = featureList
         .toArray(new AdaptiveFeatureGenerator[featureList.size()]);
     return new CachedFeatureGenerator(featuresArray);
   }
 
   private final List<AdaptiveFeatureGenerator> createFeatureList(
-      TrainingParameters params) {
+      TrainingParameters params, SharedFeatureCache cache, PredicateFilter filter) {
     List<AdaptiveFeatureGenerator> featureList = new ArrayList<AdaptiveFeatureGenerator>();
+    int wordFeatureCacheSize = InputOutputUtils.getWordFeatureCacheSize(params);
     int leftWindow = getWindowRange(params).get(0);
     int rightWindow = getWindowRange(params).get(1);
     
     String tokenParam = InputOutputUtils.getTokenFeatures(params);
     if (tokenParam.equalsIgnoreCase("yes")) {
+      // the lexicons are those of this model, other models may use others
       String brownFlag = InputOutputUtils.getBrownFeatures(params);
+      String brownClusterPath = null;
+      BrownCluster brownCluster = null;
       if (brownFlag.equalsIgnoreCase("yes")) {
-        brownFeatures = true;
         System.err.println("-> Brown cluster Token features added!");
-        String brownClusterPath = params.getSettings().get("BrownClusterPath");
-        if (brownCluster == null) {
-          brownCluster = new BrownCluster(brownClusterPath);
-        }
+        brownClusterPath = params.getSettings().get("BrownClusterPath");
+        brownCluster = loadBrownCluster(brownClusterPath);
       }
-      addWindowTokenFeatures(leftWindow, rightWindow, featureList);
+      addWindowTokenFeatures(leftWindow, rightWindow, brownClusterPath,
+          brownCluster, featureList, wordFeatureCacheSize);
+      share(featureList, "TokenFeatures=" + leftWindow + ":" + rightWindow
+          + ",brown=" + brownClusterPath, cache);
       System.err.println("-> Token features added!: Window range " + leftWindow + ":" + rightWindow);
     }
     String tokenClassParam = InputOutputUtils.getTokenClassFeatures(params);
     if (tokenClassParam.equalsIgnoreCase("yes")) {
-      addWindowTokenClassFeatures(leftWindow, rightWindow, featureList);
+      addWindowTokenClassFeatures(leftWindow, rightWindow, featureList,
+          wordFeatureCacheSize);
+      share(featureList, "TokenClassFeatures=" + leftWindow + ":" + rightWindow, cache);
       System.err.println("-> Token Class features added!: Window range " + leftWindow + ":" + rightWindow);
     }
     String outcomePriorParam = InputOutputUtils.getOutcomePriorFeatures(params);
     if (outcomePriorParam.equalsIgnoreCase("yes")) {
       addOutcomePriorFeatures(featureList);
+      share(featureList, "OutcomePriorFeatures", cache);
       System.err.println("-> Outcome prior features added!");
     }
     String previousMapParam = InputOutputUtils.getPreviousMapFeatures(params);
@@ -178,84 +247,188 @@ public class FixedTrainer extends AbstractTrainer {
     String sentenceParam = InputOutputUtils.getSentenceFeatures(params);
     if (sentenceParam.equalsIgnoreCase("yes")) {
       addSentenceFeatures(featureList);
+      share(featureList, "SentenceFeatures", cache);
       System.err.println("-> Sentence features added!");
     }
     String preffixParam = InputOutputUtils.getPreffixFeatures(params);
     if (preffixParam
         .equalsIgnoreCase("yes")) {
-      addPrefixFeatures(featureList);
+      addPrefixFeatures(featureList, wordFeatureCacheSize);
+      share(featureList, "PrefixFeatures", cache);
       System.err.println("-> Prefix features added!");
     }
     String suffixParam = InputOutputUtils.getSuffixFeatures(params);
     if (suffixParam.equalsIgnoreCase("yes")) {
-      addSuffixFeatures(featureList);
+      addSuffixFeatures(featureList, wordFeatureCacheSize);
+      share(featureList, "SuffixFeatures", cache);
       System.err.println("-> Suffix features added!");
     }
     String bigramClassParam = InputOutputUtils.getBigramClassFeatures(params);
     if (bigramClassParam.equalsIgnoreCase("yes")) {
-      addBigramClassFeatures(featureList);
+      addBigramClassFeatures(featureList, filter);
+      share(featureList, "BigramClassFeatures", cache);
       System.err.println("-> Bigram class features added!");
     }
     String trigramClassParam = InputOutputUtils.getTrigramClassFeatures(params);
     if (trigramClassParam.equalsIgnoreCase("yes")) {
-      addTrigramClassFeatures(featureList);
+      addTrigramClassFeatures(featureList, filter);
+      share(featureList, "TrigramClassFeatures", cache);
       System.err.println("-> Trigram class features added!");
     }
     String fourgramClassParam = InputOutputUtils.getFourgramClassFeatures(params);
     if (fourgramClassParam.equalsIgnoreCase("yes")) {
-      addFourgramClassFeatures(featureList);
+      addFourgramClassFeatures(featureList, filter);
+      share(featureList, "FourgramClassFeatures", cache);
       System.err.println("-> 4-gram class features added!");
     }
     String fivegramClassParam = InputOutputUtils.getFivegramClassFeatures(params);
     if (fivegramClassParam.equalsIgnoreCase("yes")) {
-      addFivegramClassFeatures(featureList);
+      addFivegramClassFeatures(featureList, filter);
+      share(featureList, "FivegramClassFeatures", cache);
       System.err.println("-> 5-gram class features added!");
     }
     String charNgramParam = InputOutputUtils.getCharNgramFeatures(params);
     if (charNgramParam.equalsIgnoreCase("yes")) {
       int minLength = getNgramRange(params).get(0);
       int maxLength = getNgramRange(params).get(1);
-      addCharNgramFeatures(minLength, maxLength, featureList);
+      addCharNgramFeatures(minLength, maxLength, featureList,
+          wordFeatureCacheSize);
+      share(featureList, "CharNgramFeatures=" + minLength + ":" + maxLength, cache);
       System.err.println("-> CharNgram features added!: Range " + minLength + ":" + maxLength);
     }
     String dictionaryParam = InputOutputUtils.getDictionaryFeatures(params);
     if (dictionaryParam.equalsIgnoreCase("yes")) {
       System.err.println("-> Dictionary features added!");
       String dictPath = InputOutputUtils.getDictPath(params);
-      if (dictionaries == null) {
-        dictionaries = new Dictionaries(dictPath);
-      }
-      addDictionaryFeatures(featureList);
+      Dictionaries dictionaries = loadDictionaries(dictPath);
+      addDictionaryFeatures(dictionaries, featureList);
+      share(featureList, "DictionaryFeatures=" + dictPath, cache);
     }
     String distSimParam = InputOutputUtils.getDistSimFeatures(params);
     if (distSimParam.equalsIgnoreCase("yes")) {
       System.err.println("-> Distributional similarity features added!");
       String distSimPath = InputOutputUtils.getDistSimPath(params);
-      if (distSimCluster == null) {
-        distSimCluster = new ClarkCluster(distSimPath);
-      }
-      addDistSimFeatures(featureList);
+      ClarkCluster distSimCluster = loadDistSimCluster(distSimPath);
+      addDistSimFeatures(distSimPath, distSimCluster, featureList,
+          wordFeatureCacheSize);
+      share(featureList, "DistSimFeatures=" + distSimPath, cache);
     }
     return featureList;
   }
 
+  /**
+   * Loads the dictionaries of a directory, once per path.
+   * 
+   * @param dictPath
+   *          the directory of the dictionaries
+   * @return the dictionaries
+   */
+  public static Dictionaries loadDictionaries(String dictPath) {
+    Dictionaries dicts = dictionariesByPath.get(dictPath);
+    if (dicts == null) {
+      dicts = new Dictionaries(dictPath);
+      Dictionaries previous = dictionariesByPath.putIfAbsent(dictPath, dicts);
+      if (previous != null) {
+        dicts = previous;
+      }
+    }
+    return dicts;
+  }
+
+  /**
+   * Loads a Clark cluster lexicon, once per path.
+   * 
+   * @param distSimPath
+   *          the lexicon file
+   * @return the cluster lexicon
+   */
+  public static ClarkCluster loadDistSimCluster(String distSimPath) {
+    ClarkCluster cluster = distSimClustersByPath.get(distSimPath);
+    if (cluster == null) {
+      cluster = new ClarkCluster(distSimPath);
+      ClarkCluster previous = distSimClustersByPath.putIfAbsent(distSimPath, cluster);
+      if (previous != null) {
+        cluster = previous;
+      }
+    }
+    return cluster;
+  }
+
+  /**
+   * Loads a Brown cluster lexicon, once per path.
+   * 
+   * @param brownClusterPath
+   *          the lexicon file
+   * @return the cluster lexicon
+   */
+  public static BrownCluster loadBrownCluster(String brownClusterPath) {
+    BrownCluster cluster = brownClustersByPath.get(brownClusterPath);
+    if (cluster == null) {
+      cluster = new BrownCluster(brownClusterPath);
+      BrownCluster previous = brownClustersByPath.putIfAbsent(brownClusterPath, cluster);
+      if (previous != null) {
+        cluster = previous;
+      }
+    }
+    return cluster;
+  }
+
+  /**
+   * Shares the last feature generator of the list with the other models.
+   */
+  private static void share(List<AdaptiveFeatureGenerator> featureList,
+      String family, SharedFeatureCache cache) {
+    int last = featureList.size() - 1;
+    featureList.set(last, share(featureList.get(last), family, cache));
+  }
+
+  private static AdaptiveFeatureGenerator share(
+      AdaptiveFeatureGenerator generator, String family,
+      SharedFeatureCache cache) {
+    if (cache == null) {
+      return generator;
+    }
+    return new SharedFeatureGenerator(cache, family, generator);
+  }
+
   public static void addWindowTokenFeatures(int leftWindow, int rightWindow,
       List<AdaptiveFeatureGenerator> featureList) {
-    if (brownFeatures) {
-      featureList.add(new WindowFeatureGenerator(new TokenFeatureGenerator(true, brownFeatures, brownCluster),
-          leftWindow, rightWindow));
+    addWindowTokenFeatures(leftWindow, rightWindow, null, null, featureList, 0);
+  }
+
+  /**
+   * Adds the token features in a window, with the Brown cluster classes of
+   * the tokens if a cluster is given, cached by word if the cache size is
+   * positive.
+   */
+  public static void addWindowTokenFeatures(int leftWindow, int rightWindow,
+      String brownClusterPath, BrownCluster brownCluster,
+      List<AdaptiveFeatureGenerator> featureList, int wordFeatureCacheSize) {
+    if (brownCluster != null) {
+      featureList.add(new WindowFeatureGenerator(cacheByWord("TokenFeatures,brown="
+          + brownClusterPath,
+          new TokenFeatureGenerator(true, true, brownCluster),
+          wordFeatureCacheSize), leftWindow, rightWindow));
     }
     else {
-      featureList.add(new WindowFeatureGenerator(new TokenFeatureGenerator(),
-          leftWindow, rightWindow));
+      featureList.add(new WindowFeatureGenerator(cacheByWord("TokenFeatures",
+          new TokenFeatureGenerator(), wordFeatureCacheSize), leftWindow,
+          rightWindow));
     }
     
   }
 
   public static void addWindowTokenClassFeatures(int leftWindow,
       int rightWindow, List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new WindowFeatureGenerator(new TokenClassFeatureGenerator(
-        true), leftWindow, rightWindow));
+    addWindowTokenClassFeatures(leftWindow, rightWindow, featureList, 0);
+  }
+
+  public static void addWindowTokenClassFeatures(int leftWindow,
+      int rightWindow, List<AdaptiveFeatureGenerator> featureList,
+      int wordFeatureCacheSize) {
+    featureList.add(new WindowFeatureGenerator(cacheByWord("TokenClassFeatures",
+        new TokenClassFeatureGenerator(true), wordFeatureCacheSize),
+        leftWindow, rightWindow));
   }
 
   public static void addOutcomePriorFeatures(
@@ -275,57 +448,113 @@ public class FixedTrainer extends AbstractTrainer {
 
   public static void addPrefixFeatures(
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new Prefix34FeatureGenerator());
+    addPrefixFeatures(featureList, 0);
+  }
+
+  public static void addPrefixFeatures(
+      List<AdaptiveFeatureGenerator> featureList, int wordFeatureCacheSize) {
+    featureList.add(cacheByWord("PrefixFeatures", new Prefix34FeatureGenerator(),
+        wordFeatureCacheSize));
   }
 
   public static void addSuffixFeatures(
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new SuffixFeatureGenerator());
+    addSuffixFeatures(featureList, 0);
+  }
+
+  public static void addSuffixFeatures(
+      List<AdaptiveFeatureGenerator> featureList, int wordFeatureCacheSize) {
+    featureList.add(cacheByWord("SuffixFeatures", new SuffixFeatureGenerator(),
+        wordFeatureCacheSize));
   }
 
   public static void addBigramClassFeatures(
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new BigramClassFeatureGenerator());
+    addBigramClassFeatures(featureList, null);
+  }
+
+  public static void addBigramClassFeatures(
+      List<AdaptiveFeatureGenerator> featureList, PredicateFilter filter) {
+    featureList.add(new BigramClassFeatureGenerator(filter));
   }
 
   public static void addTrigramClassFeatures(
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new TrigramClassFeatureGenerator());
+    addTrigramClassFeatures(featureList, null);
+  }
+
+  public static void addTrigramClassFeatures(
+      List<AdaptiveFeatureGenerator> featureList, PredicateFilter filter) {
+    featureList.add(new TrigramClassFeatureGenerator(filter));
   }
   
   public static void addFourgramClassFeatures(
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new FourgramClassFeatureGenerator());
+    addFourgramClassFeatures(featureList, null);
+  }
+
+  public static void addFourgramClassFeatures(
+      List<AdaptiveFeatureGenerator> featureList, PredicateFilter filter) {
+    featureList.add(new FourgramClassFeatureGenerator(filter));
   }
   
   public static void addFivegramClassFeatures(
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new FivegramClassFeatureGenerator());
+    addFivegramClassFeatures(featureList, null);
+  }
+
+  public static void addFivegramClassFeatures(
+      List<AdaptiveFeatureGenerator> featureList, PredicateFilter filter) {
+    featureList.add(new FivegramClassFeatureGenerator(filter));
   }
 
   public static void addCharNgramFeatures(int minLength, int maxLength,
       List<AdaptiveFeatureGenerator> featureList) {
-    featureList.add(new CharacterNgramFeatureGenerator(minLength, maxLength));
+    addCharNgramFeatures(minLength, maxLength, featureList, 0);
+  }
+
+  public static void addCharNgramFeatures(int minLength, int maxLength,
+      List<AdaptiveFeatureGenerator> featureList, int wordFeatureCacheSize) {
+    featureList.add(cacheByWord("CharNgramFeatures=" + minLength + ":" + maxLength,
+        new CharacterNgramFeatureGenerator(minLength, maxLength),
+        wordFeatureCacheSize));
   }
 
   /**
-   * Adds the dictionary features to the feature list.
+   * Adds the dictionary features to the feature list. All the dictionaries
+   * are matched in one pass over the sentence.
    * 
+   * @param dictionaries
+   *          the dictionaries
    * @param featureList
    *          the feature list containing the dictionary features
    */
-  private static void addDictionaryFeatures(
+  private static void addDictionaryFeatures(final Dictionaries dictionaries,
       final List<AdaptiveFeatureGenerator> featureList) {
-    for (int i = 0; i < dictionaries.getIgnoreCaseDictionaries().size(); i++) {
-      prefix = dictionaries.getDictNames().get(i);
-      dictionary = dictionaries.getIgnoreCaseDictionaries().get(i);
-      featureList.add(new DictionaryFeatureGenerator(prefix, dictionary));
-    }
+    featureList.add(new DictionariesFeatureGenerator(dictionaries
+        .getDictNames(), dictionaries.getIgnoreCaseDictionaries()));
   }
   
-  private static void addDistSimFeatures(final List<AdaptiveFeatureGenerator> featureList) {
-    distSimLexicon = distSimCluster.getIgnoreCaseDictionary();
-    featureList.add(new DistSimFeatureGenerator(distSimLexicon));
+  private static void addDistSimFeatures(final String distSimPath,
+      final ClarkCluster distSimCluster,
+      final List<AdaptiveFeatureGenerator> featureList,
+      final int wordFeatureCacheSize) {
+    Dictionary distSimLexicon = distSimCluster.getIgnoreCaseDictionary();
+    featureList.add(cacheByWord("DistSimFeatures=" + distSimPath,
+        new DistSimFeatureGenerator(distSimLexicon), wordFeatureCacheSize));
+  }
+
+  /**
+   * Caches by word the features of a generator which only depend on the
+   * current token, in a cache of at most the given number of words, or does
+   * not cache them if the size is not positive.
+   */
+  private static AdaptiveFeatureGenerator cacheByWord(String family,
+      AdaptiveFeatureGenerator generator, int wordFeatureCacheSize) {
+    if (wordFeatureCacheSize <= 0) {
+      return generator;
+    }
+    return new WordFeatureCacheGenerator(family, generator, wordFeatureCacheSize);
   }
 
   public static List<Integer> getWindowRange(TrainingParameters params) {
@@ -0,0 +1,91 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.util.Arrays;
+
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.SequenceValidator;
+import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+
+/**
+ * Greedy left to right decoding: the best valid outcome of every token is
+ * chosen given the outcomes already chosen. It finds the same sequences as
+ * the {@link BeamNameDecoder} with beam size 1, without keeping hypotheses:
+ * the model is evaluated once per token and no history is built unless a
+ * custom sequence validator needs it.
+ *
+ * @author ragerri
+ */
+public class GreedyNameDecoder extends NameDecoder {
+
+  /**
+   * The outcomes chosen so far, for custom sequence validators.
+   */
+  private String[] history = new String[0];
+
+  /**
+   * Creates a greedy decoder.
+   *
+   * @param model the model
+   * @param contextGenerator the context generator
+   * @param outcomeTable the outcomes of the model
+   * @param sequenceValidator the validator, or null to use the name finder
+   *          rules of the outcome table
+   */
+  public GreedyNameDecoder(MaxentModel model,
+      NameContextGenerator contextGenerator, OutcomeTable outcomeTable,
+      SequenceValidator<String> sequenceValidator) {
+    super(model, contextGenerator, outcomeTable, sequenceValidator);
+  }
+
+  public void decode(String[] tokens, Object[] additionalContext,
+      int[] outcomes, double[] probs) {
+    int length = tokens.length;
+    if (length == 0) {
+      return;
+    }
+    startSentence(tokens, additionalContext);
+    boolean validator = hasSequenceValidator();
+    if (validator && history.length < length) {
+      history = new String[length];
+    }
+    for (int i = 0; i < length; i++) {
+      int po = i > 0 ? outcomes[i - 1] : -1;
+      int ppo = i > 1 ? outcomes[i - 2] : -1;
+      double[] scores = probabilities(i, po, ppo);
+      String[] prefix = validator ? Arrays.copyOf(history, i) : null;
+      int best = -1;
+      for (int outcome = 0; outcome < numOutcomes; outcome++) {
+        if ((best == -1 || scores[outcome] > scores[best])
+            && isValid(i, po, outcome, prefix)) {
+          best = outcome;
+        }
+      }
+      if (best == -1) {
+        throw new IllegalStateException("No valid outcome sequence at token "
+            + i + "!");
+      }
+      outcomes[i] = best;
+      probs[i] = scores[best];
+      if (validator) {
+        history[i] = outcomeTable.getOutcome(best);
+      }
+    }
+  }
+
+}
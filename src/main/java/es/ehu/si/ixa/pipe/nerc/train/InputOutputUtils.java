@@ -150,6 +150,24 @@ public class InputOutputUtils {
     return model;
   }
 
+  public static String[] getTagModels(TrainingParameters params) {
+    String[] models = null;
+    if (params.getSettings().get("TagModels") != null) {
+      models = params.getSettings().get("TagModels").trim().split("\\s*,\\s*");
+    }
+    return models;
+  }
+
+  public static String getMultiModelOutput(TrainingParameters params) {
+    String multiModelOutput = null;
+    if (params.getSettings().get("MultiModelOutput") == null) {
+      multiModelOutput = CLI.DEFAULT_MULTI_MODEL_OUTPUT;
+    } else {
+      multiModelOutput = params.getSettings().get("MultiModelOutput");
+    }
+    return multiModelOutput;
+  }
+
   public static String getCorpusFormat(TrainingParameters params) {
     String corpusFormat = null;
     if (params.getSettings().get("CorpusFormat") == null) {
@@ -179,7 +197,85 @@ public class InputOutputUtils {
     }
     return beamsize;
   }
+
+  public static Double getBeamRatio(TrainingParameters params) {
+    Double beamRatio = null;
+    if (params.getSettings().get("BeamRatio") == null) {
+      beamRatio = CLI.DEFAULT_BEAM_RATIO;
+    } else {
+      beamRatio = Double.parseDouble(params.getSettings().get("BeamRatio"));
+    }
+    return beamRatio;
+  }
+
+  public static String[] getNeTypes(TrainingParameters params) {
+    String[] neTypes = null;
+    if (params.getSettings().get("Types") != null) {
+      neTypes = params.getSettings().get("Types").split(",");
+    }
+    return neTypes;
+  }
+
+  public static String getDecoder(TrainingParameters params) {
+    String decoder = null;
+    if (params.getSettings().get("Decoder") == null) {
+      decoder = CLI.DEFAULT_DECODER;
+    } else {
+      decoder = params.getSettings().get("Decoder");
+    }
+    return decoder;
+  }
+
+  public static String getModelPrecision(TrainingParameters params) {
+    String modelPrecision = null;
+    if (params.getSettings().get("ModelPrecision") == null) {
+      modelPrecision = CLI.DEFAULT_MODEL_PRECISION;
+    } else {
+      modelPrecision = params.getSettings().get("ModelPrecision");
+    }
+    return modelPrecision;
+  }
+
+  public static Integer getEvalThreads(TrainingParameters params) {
+    Integer evalThreads = null;
+    if (params.getSettings().get("EvalThreads") == null) {
+      evalThreads = CLI.DEFAULT_EVAL_THREADS;
+    } else {
+      evalThreads = Integer.parseInt(params.getSettings().get("EvalThreads"));
+    }
+    return evalThreads;
+  }
   
+  public static Integer getReadThreads(TrainingParameters params) {
+    Integer readThreads = null;
+    if (params.getSettings().get("ReadThreads") == null) {
+      readThreads = CLI.DEFAULT_READ_THREADS;
+    } else {
+      readThreads = Integer.parseInt(params.getSettings().get("ReadThreads"));
+    }
+    return readThreads;
+  }
+
+  public static Integer getWordFeatureCacheSize(TrainingParameters params) {
+    Integer cacheSize = null;
+    if (params.getSettings().get("WordFeatureCacheSize") == null) {
+      cacheSize = CLI.DEFAULT_WORD_FEATURE_CACHE_SIZE;
+    } else {
+      cacheSize = Integer.parseInt(params.getSettings().get("WordFeatureCacheSize"));
+    }
+    return cacheSize;
+  }
+
+  public static Integer getSentenceCacheSize(TrainingParameters params) {
+    Integer cacheSize = null;
+    if (params.getSettings().get("SentenceCacheSize") == null) {
+      cacheSize = CLI.DEFAULT_SENTENCE_CACHE_SIZE;
+    } else {
+      cacheSize = Integer.parseInt(params.getSettings().get("SentenceCacheSize"));
+    }
+    return cacheSize;
+  }
+
   public static String getWindow(TrainingParameters params) {
     String windowFlag = null;
     if (params.getSettings().get("Window") != null) {
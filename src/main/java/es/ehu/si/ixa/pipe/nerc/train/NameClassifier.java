@@ -7,8 +7,6 @@ import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import es.ehu.si.ixa.pipe.nerc.features.AdaptiveFeatureGenerator;
 import es.ehu.si.ixa.pipe.nerc.features.AdditionalContextFeatureGenerator;
@@ -28,9 +26,7 @@ import opennlp.model.AbstractModel;
 import opennlp.model.EventStream;
 import opennlp.model.MaxentModel;
 import opennlp.model.TrainUtil;
-import opennlp.tools.util.BeamSearch;
 import opennlp.tools.util.ObjectStream;
-import opennlp.tools.util.Sequence;
 import opennlp.tools.util.SequenceValidator;
 import opennlp.tools.util.Span;
 import opennlp.tools.util.TrainingParameters;
@@ -40,7 +36,19 @@ public class NameClassifier {
   
   private static String[][] EMPTY = new String[0][0];
   public static final int DEFAULT_BEAM_SIZE = 3;
-  private static final Pattern typedOutcomePattern = Pattern.compile("(.+)-\\w+");
+  /**
+   * Decode with beam search, as the OpenNLP name finder.
+   */
+  public static final String BEAM_DECODER = "beam";
+  /**
+   * Decode the best sequence with the Viterbi algorithm.
+   */
+  public static final String VITERBI_DECODER = "viterbi";
+  /**
+   * Decode greedily, the best valid outcome of every token from left to
+   * right. Beam search with beam size 1 uses this decoder too.
+   */
+  public static final String GREEDY_DECODER = "greedy";
 
 
 
@@ -50,8 +58,16 @@ public class NameClassifier {
 
   protected MaxentModel model;
   protected NameContextGenerator contextGenerator;
-  private Sequence bestSequence;
-  private BeamSearch<String> beam;
+  /**
+   * The role and type of every outcome of the model.
+   */
+  private final OutcomeTable outcomeTable;
+  private NameDecoder decoder;
+  /**
+   * The outcomes and probabilities of the last decoded sentence.
+   */
+  private int[] bestOutcomes = new int[0];
+  private double[] bestProbs = new double[0];
   
   private AdditionalContextFeatureGenerator additionalContextFeatureGenerator =
       new AdditionalContextFeatureGenerator();
@@ -68,7 +84,90 @@ public class NameClassifier {
    */
   public NameClassifier(NameModel model, AdaptiveFeatureGenerator generator, int beamSize,
       SequenceValidator<String> sequenceValidator) {
-    this.model = model.getNameFinderModel();
+    this(model, generator, beamSize, sequenceValidator, BEAM_DECODER);
+  }
+
+  /**
+   * Initializes the name finder with the specified model and decoder.
+   *
+   * @param model the model
+   * @param generator the feature generator, or null for the default one
+   * @param beamSize the beam size, used by the beam decoder
+   * @param sequenceValidator the sequence validator, or null for the default one
+   * @param decoderType the decoder, {@link #BEAM_DECODER}, {@link #VITERBI_DECODER}
+   *          or {@link #GREEDY_DECODER}
+   */
+  public NameClassifier(NameModel model, AdaptiveFeatureGenerator generator, int beamSize,
+      SequenceValidator<String> sequenceValidator, String decoderType) {
+    this(model, generator, beamSize, sequenceValidator, decoderType, null);
+  }
+
+  /**
+   * Initializes the name finder with the decoding options of the
+   * training parameters: Beamsize, BeamRatio, Decoder, ModelPrecision and
+   * Types.
+   *
+   * @param model the model
+   * @param generator the feature generator, or null for the default one
+   * @param params the parameters
+   */
+  public NameClassifier(NameModel model, AdaptiveFeatureGenerator generator,
+      TrainingParameters params) {
+    this(model, generator, InputOutputUtils.getBeamsize(params), null,
+        InputOutputUtils.getDecoder(params), InputOutputUtils.getModelPrecision(params),
+        InputOutputUtils.getBeamRatio(params), InputOutputUtils.getNeTypes(params));
+  }
+
+  /**
+   * Initializes the name finder with the specified model, decoder and
+   * precision of the model parameters.
+   *
+   * @param model the model
+   * @param generator the feature generator, or null for the default one
+   * @param beamSize the beam size, used by the beam decoder
+   * @param sequenceValidator the sequence validator, or null for the default one
+   * @param decoderType the decoder, {@link #BEAM_DECODER}, {@link #VITERBI_DECODER}
+   *          or {@link #GREEDY_DECODER}
+   * @param modelPrecision the precision of the {@link DenseModel} used to tag,
+   *          or null to tag with the OpenNLP model; models stored in the dense
+   *          format are always used as they are
+   */
+  public NameClassifier(NameModel model, AdaptiveFeatureGenerator generator, int beamSize,
+      SequenceValidator<String> sequenceValidator, String decoderType, String modelPrecision) {
+    this(model, generator, beamSize, sequenceValidator, decoderType, modelPrecision, 0,
+        null);
+  }
+
+  /**
+   * Initializes the name finder with the specified model, decoder, precision
+   * of the model parameters, adaptive beam and name types.
+   *
+   * @param model the model
+   * @param generator the feature generator, or null for the default one
+   * @param beamSize the beam size, used by the beam decoder
+   * @param sequenceValidator the sequence validator, or null for the default one
+   * @param decoderType the decoder, {@link #BEAM_DECODER}, {@link #VITERBI_DECODER}
+   *          or {@link #GREEDY_DECODER}
+   * @param modelPrecision the precision of the {@link DenseModel} used to tag,
+   *          or null to tag with the OpenNLP model; models stored in the dense
+   *          format are always used as they are
+   * @param beamRatio the minimum ratio of the probability of a hypothesis of
+   *          the beam decoder to that of the best one, or 0 to always keep
+   *          beam size hypotheses
+   * @param types the name types found, or null to find every type of the
+   *          model; the outcomes of other types are masked
+   */
+  public NameClassifier(NameModel model, AdaptiveFeatureGenerator generator, int beamSize,
+      SequenceValidator<String> sequenceValidator, String decoderType, String modelPrecision,
+      double beamRatio, String[] types) {
+    if (model.isDenseFormat()) {
+      this.model = model.getMaxentModel();
+    } else if (modelPrecision != null && DenseModel.isSupported(model.getNameFinderModel())) {
+      this.model = model.getDenseModel(modelPrecision);
+    } else {
+      this.model = model.getNameFinderModel();
+    }
+    this.outcomeTable = new OutcomeTable(this.model, types);
 
     // If generator is provided always use that one
     if (generator != null) {
@@ -84,11 +183,22 @@ public class NameClassifier {
     contextGenerator.addFeatureGenerator(
           new WindowFeatureGenerator(additionalContextFeatureGenerator, 8, 8));
 
-    if (sequenceValidator == null)
-      sequenceValidator = new NameFinderSequenceValidator();
-
-    beam = new BeamSearch<String>(beamSize, contextGenerator, this.model,
-        sequenceValidator, beamSize);
+    if (VITERBI_DECODER.equals(decoderType)) {
+      decoder = new ViterbiNameDecoder(this.model, contextGenerator, outcomeTable,
+          sequenceValidator);
+    } else if (GREEDY_DECODER.equals(decoderType)
+        || (BEAM_DECODER.equals(decoderType) && beamSize == 1)) {
+      decoder = new GreedyNameDecoder(this.model, contextGenerator, outcomeTable,
+          sequenceValidator);
+    } else if (BEAM_DECODER.equals(decoderType) && beamRatio > 0) {
+      decoder = new AdaptiveBeamNameDecoder(this.model, contextGenerator, outcomeTable,
+          sequenceValidator, beamSize, beamRatio);
+    } else if (BEAM_DECODER.equals(decoderType)) {
+      decoder = new BeamNameDecoder(this.model, contextGenerator, outcomeTable,
+          sequenceValidator, beamSize);
+    } else {
+      throw new IllegalArgumentException("Unknown decoder: " + decoderType);
+    }
   }
 
   public NameClassifier(NameModel model, AdaptiveFeatureGenerator generator, int beamSize) {
@@ -129,39 +239,26 @@ public class NameClassifier {
    */
   public Span[] find(String[] tokens, String[][] additionalContext) {
     additionalContextFeatureGenerator.setCurrentContext(additionalContext);
-    bestSequence = beam.bestSequence(tokens, additionalContext);
+    bestOutcomes = new int[tokens.length];
+    bestProbs = new double[tokens.length];
+    decoder.decode(tokens, additionalContext, bestOutcomes, bestProbs);
 
-    List<String> c = bestSequence.getOutcomes();
+    String[] outcomes = new String[tokens.length];
+    for (int li = 0; li < outcomes.length; li++) {
+      outcomes[li] = outcomeTable.getOutcome(bestOutcomes[li]);
+    }
+    contextGenerator.updateAdaptiveData(tokens, outcomes);
 
-    contextGenerator.updateAdaptiveData(tokens, c.toArray(new String[c.size()]));
+    return outcomeTable.toSpans(bestOutcomes, bestOutcomes.length);
+  }
 
-    int start = -1;
-    int end = -1;
-    List<Span> spans = new ArrayList<Span>(tokens.length);
-    for (int li = 0; li < c.size(); li++) {
-      String chunkTag = c.get(li);
-      if (chunkTag.endsWith(NameClassifier.START)) {
-        if (start != -1) {
-          spans.add(new Span(start, end, extractNameType(c.get(li - 1))));
-        }
-        start = li;
-        end = li + 1;
-      }
-      else if (chunkTag.endsWith(NameClassifier.CONTINUE)) {
-        end = li + 1;
-      }
-      else if (chunkTag.endsWith(NameClassifier.OTHER)) {
-        if (start != -1) {
-          spans.add(new Span(start, end, extractNameType(c.get(li - 1))));
-          start = -1;
-          end = -1;
-        }
-      }
-    }
-    if (start != -1) {
-      spans.add(new Span(start, end, extractNameType(c.get(c.size() - 1))));
-    }
-    return spans.toArray(new Span[spans.size()]);
+  /**
+   * Gets the role and type of the outcomes of the model.
+   *
+   * @return the outcome table
+   */
+  public OutcomeTable getOutcomeTable() {
+    return outcomeTable;
   }
 
   /**
@@ -185,7 +282,7 @@ public class NameClassifier {
    *          sequence.
    */
    public void probs(double[] probs) {
-     bestSequence.getProbs(probs);
+     System.arraycopy(bestProbs, 0, probs, 0, bestProbs.length);
    }
 
   /**
@@ -196,7 +293,7 @@ public class NameClassifier {
     * when it was last called.
     */
    public double[] probs() {
-     return bestSequence.getProbs();
+     return bestProbs.clone();
    }
 
    /**
@@ -210,7 +307,7 @@ public class NameClassifier {
    public double[] probs(Span[] spans) {
 
      double[] sprobs = new double[spans.length];
-     double[] probs = bestSequence.getProbs();
+     double[] probs = bestProbs;
 
      for (int si=0; si<spans.length; si++) {
 
@@ -310,13 +407,19 @@ public class NameClassifier {
    * @return the name type, or null if not set
    */
   static final String extractNameType(String outcome) {
-    Matcher matcher = typedOutcomePattern.matcher(outcome);
-    if(matcher.matches()) {
-      String nameType = matcher.group(1);
-      return nameType;
+    // same as matching "(.+)-\\w+": a non empty type, a hyphen and a
+    // suffix made of word characters
+    int hyphen = outcome.lastIndexOf('-');
+    if (hyphen <= 0 || hyphen == outcome.length() - 1) {
+      return null;
     }
-
-    return null;
+    for (int i = hyphen + 1; i < outcome.length(); i++) {
+      char c = outcome.charAt(i);
+      if (!(c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9' || c == '_')) {
+        return null;
+      }
+    }
+    return outcome.substring(0, hyphen);
   }
 
   /**
@@ -0,0 +1,283 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.util.Arrays;
+
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.SequenceValidator;
+import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+
+/**
+ * Base class of the decoders finding the best outcome sequence of a sentence
+ * with a name finder model. Outcomes are handled as indexes of the
+ * {@link OutcomeTable}.
+ *
+ * The context of a token only depends on the sentence and on the previous
+ * two outcomes, so the outcome probabilities are computed once per position
+ * and pair of previous outcomes and shared by all the hypotheses which agree
+ * on them. For maxent and perceptron models the parameters of the features
+ * which do not depend on the previous outcomes are summed once per position
+ * by a {@link ContextScorer}.
+ *
+ * A decoder keeps per sentence state and must not be shared between threads.
+ *
+ * @author ragerri
+ */
+public abstract class NameDecoder {
+
+  protected final MaxentModel model;
+  protected final NameContextGenerator contextGenerator;
+  protected final OutcomeTable outcomeTable;
+  protected final int numOutcomes;
+  /**
+   * A validator which is not a {@link NameFinderSequenceValidator}, or null if
+   * the rules of the {@link OutcomeTable} apply.
+   */
+  private final SequenceValidator<String> sequenceValidator;
+  /**
+   * Evaluates the model adding the outcome features to the static sums of a
+   * position, or null if the model type is not supported.
+   */
+  private final ContextScorer scorer;
+  /**
+   * The outcomes of the types not decoded, whose probability is set to zero
+   * so that they do not take the place of the decoded outcomes in a beam.
+   */
+  private final int[] maskedOutcomes;
+  /**
+   * The position of the static sums of the scorer.
+   */
+  private int scorerIndex;
+
+  private String[] tokens;
+  private Object[] additionalContext;
+  /**
+   * The position of the static context.
+   */
+  private int staticIndex;
+  private String[] staticContext;
+  /**
+   * The position of the cached probabilities.
+   */
+  private int position;
+  /**
+   * The slot of the cached probabilities of every pair of previous outcomes,
+   * or -1.
+   */
+  private final int[] slots;
+  private int[] usedKeys = new int[16];
+  private int numUsedKeys;
+  private double[][] cachedProbs = new double[16][];
+
+  /**
+   * Creates a decoder.
+   *
+   * @param model the model
+   * @param contextGenerator the context generator
+   * @param outcomeTable the outcomes of the model
+   * @param sequenceValidator the validator, or null to use the name finder
+   *          rules of the outcome table
+   */
+  protected NameDecoder(MaxentModel model,
+      NameContextGenerator contextGenerator, OutcomeTable outcomeTable,
+      SequenceValidator<String> sequenceValidator) {
+    this.model = model;
+    this.contextGenerator = contextGenerator;
+    this.outcomeTable = outcomeTable;
+    this.numOutcomes = outcomeTable.getNumOutcomes();
+    this.sequenceValidator = sequenceValidator instanceof NameFinderSequenceValidator ? null
+        : sequenceValidator;
+    this.scorer = ContextScorer.isSupported(model) ? new ContextScorer(model) : null;
+    this.maskedOutcomes = new int[outcomeTable.getNumMasked()];
+    int masked = 0;
+    for (int outcome = 0; outcome < numOutcomes; outcome++) {
+      if (!outcomeTable.isAllowed(outcome)) {
+        maskedOutcomes[masked++] = outcome;
+      }
+    }
+    this.slots = new int[(numOutcomes + 1) * (numOutcomes + 1)];
+    Arrays.fill(slots, -1);
+  }
+
+  /**
+   * Finds the best outcome sequence of a sentence.
+   *
+   * @param tokens the tokens of the sentence
+   * @param additionalContext the additional context, passed to the context
+   *          generator
+   * @param outcomes the array to store the outcome of every token
+   * @param probs the array to store the probability of every outcome
+   */
+  public abstract void decode(String[] tokens, Object[] additionalContext,
+      int[] outcomes, double[] probs);
+
+  /**
+   * Prepares the decoding of a sentence.
+   */
+  protected void startSentence(String[] tokens, Object[] additionalContext) {
+    this.tokens = tokens;
+    this.additionalContext = additionalContext;
+    clearCache();
+    position = -1;
+    staticIndex = -1;
+    scorerIndex = -1;
+  }
+
+  private void clearCache() {
+    for (int i = 0; i < numUsedKeys; i++) {
+      slots[usedKeys[i]] = -1;
+    }
+    numUsedKeys = 0;
+  }
+
+  /**
+   * Gets the outcome probabilities of a position of the current sentence.
+   * The probabilities of the last position requested are cached, so
+   * decoders should request the positions in order. The returned array must
+   * not be modified.
+   *
+   * @param index the position
+   * @param po the previous outcome, or -1 at the start of the sentence
+   * @param ppo the outcome before the previous one, or -1
+   * @return the probability of every outcome
+   */
+  protected double[] probabilities(int index, int po, int ppo) {
+    if (index != position) {
+      clearCache();
+      position = index;
+    }
+    int key = (po + 1) * (numOutcomes + 1) + ppo + 1;
+    int slot = slots[key];
+    if (slot == -1) {
+      slot = numUsedKeys;
+      if (slot == usedKeys.length) {
+        usedKeys = Arrays.copyOf(usedKeys, slot * 2);
+        cachedProbs = Arrays.copyOf(cachedProbs, slot * 2);
+      }
+      if (cachedProbs[slot] == null) {
+        cachedProbs[slot] = new double[numOutcomes];
+      }
+      usedKeys[numUsedKeys++] = key;
+      slots[key] = slot;
+      evaluate(index, po, ppo, cachedProbs[slot]);
+    }
+    return cachedProbs[slot];
+  }
+
+  /**
+   * Evaluates the model for a position and pair of previous outcomes.
+   */
+  private void evaluate(int index, int po, int ppo, double[] probs) {
+    if (scorer != null) {
+      if (index != scorerIndex) {
+        scorer.setStaticContext(getStaticContext(index));
+        scorerIndex = index;
+      }
+      scorer.eval(getOutcomeContext(index, po, ppo), probs);
+    } else {
+      String[] context = getContext(index, po, ppo);
+      Arrays.fill(probs, 0);
+      double[] result = model.eval(context, probs);
+      if (result != probs) {
+        System.arraycopy(result, 0, probs, 0, numOutcomes);
+      }
+    }
+    for (int outcome : maskedOutcomes) {
+      probs[outcome] = 0;
+    }
+  }
+
+  /**
+   * Builds the context of a position of the current sentence for a pair of
+   * previous outcomes: the static context of the position, computed once,
+   * followed by the features of the previous outcomes.
+   *
+   * @param index the position
+   * @param po the previous outcome, or -1 at the start of the sentence
+   * @param ppo the outcome before the previous one, or -1
+   * @return the context
+   */
+  protected String[] getContext(int index, int po, int ppo) {
+    String[] staticFeatures = getStaticContext(index);
+    String[] outcomeFeatures = getOutcomeContext(index, po, ppo);
+    String[] context = new String[staticFeatures.length + outcomeFeatures.length];
+    System.arraycopy(staticFeatures, 0, context, 0, staticFeatures.length);
+    System.arraycopy(outcomeFeatures, 0, context, staticFeatures.length,
+        outcomeFeatures.length);
+    return context;
+  }
+
+  /**
+   * Gets the features of a position which do not depend on the previous
+   * outcomes, computed once per position.
+   *
+   * @param index the position
+   * @return the static context
+   */
+  protected String[] getStaticContext(int index) {
+    if (index != staticIndex) {
+      staticContext = contextGenerator.getStaticContext(index, tokens,
+          additionalContext);
+      staticIndex = index;
+    }
+    return staticContext;
+  }
+
+  /**
+   * Gets the features of a position which depend on the previous outcomes.
+   *
+   * @param index the position
+   * @param po the previous outcome, or -1 at the start of the sentence
+   * @param ppo the outcome before the previous one, or -1
+   * @return the outcome context
+   */
+  protected String[] getOutcomeContext(int index, int po, int ppo) {
+    return contextGenerator.getOutcomeContext(index, tokens,
+        po == -1 ? NameClassifier.OTHER : outcomeTable.getOutcome(po),
+        ppo == -1 ? NameClassifier.OTHER : outcomeTable.getOutcome(ppo));
+  }
+
+  /**
+   * Whether a custom sequence validator needs the outcome history of the
+   * hypotheses.
+   */
+  protected boolean hasSequenceValidator() {
+    return sequenceValidator != null;
+  }
+
+  /**
+   * Checks whether an outcome can follow the previous outcomes.
+   *
+   * @param index the position of the outcome
+   * @param previous the previous outcome, or -1 at the start of the sentence
+   * @param outcome the outcome
+   * @param history the outcomes of the previous positions, only required if
+   *          {@link #hasSequenceValidator()}
+   * @return true if the outcome is valid
+   */
+  protected boolean isValid(int index, int previous, int outcome,
+      String[] history) {
+    if (sequenceValidator == null) {
+      return outcomeTable.isValid(previous, outcome);
+    }
+    return outcomeTable.isAllowed(outcome)
+        && sequenceValidator.validSequence(index, tokens, history,
+            outcomeTable.getOutcome(outcome));
+  }
+
+}
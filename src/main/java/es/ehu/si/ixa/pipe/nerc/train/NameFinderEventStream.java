@@ -94,13 +94,9 @@ public class NameFinderEventStream extends opennlp.tools.util.AbstractEventStrea
      contextGenerator.clearAdaptiveData();
    }
    
-   String outcomes[] = generateOutcomes(sample.getNames(), type, sample.getSentence().length);
+   String[] tokens = sample.getSentence();
+   String outcomes[] = generateOutcomes(sample.getNames(), type, tokens.length);
    additionalContextFeatureGenerator.setCurrentContext(sample.getAdditionalContext());
-   String[] tokens = new String[sample.getSentence().length];
-   
-   for (int i = 0; i < sample.getSentence().length; i++) {
-     tokens[i] = sample.getSentence()[i];
-   }
    
    return generateEvents(tokens, outcomes, contextGenerator).iterator();
  }
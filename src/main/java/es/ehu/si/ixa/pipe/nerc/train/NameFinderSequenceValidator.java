@@ -3,35 +3,61 @@ package es.ehu.si.ixa.pipe.nerc.train;
 import opennlp.tools.util.SequenceValidator;
 
 public class NameFinderSequenceValidator implements
-SequenceValidator<String> {
-
-public boolean validSequence(int i, String[] inputSequence,
-  String[] outcomesSequence, String outcome) {
-
-// outcome is formatted like "cont" or "sometype-cont", so we
-// can check if it ends with "cont".
-if (outcome.endsWith(NameClassifier.CONTINUE)) {
-  
-  int li = outcomesSequence.length - 1;
-  
-  if (li == -1) {
-    return false;
-  } else if (outcomesSequence[li].endsWith(NameClassifier.OTHER)) {
-    return false;
-  } else if (outcomesSequence[li].endsWith(NameClassifier.CONTINUE)) {
-    // if it is continue, we have to check if previous match was of the same type 
-    String previousNameType = NameClassifier.extractNameType(outcomesSequence[li]);
-    String nameType = NameClassifier.extractNameType(outcome);
-    if( previousNameType != null || nameType != null ) {
-      if( nameType != null ) {
-        if( nameType.equals(previousNameType) ){
-          return true;
+    SequenceValidator<String> {
+
+  /**
+   * The outcomes of the model, or null to check the outcome strings.
+   */
+  private final OutcomeTable outcomeTable;
+
+  public NameFinderSequenceValidator() {
+    this(null);
+  }
+
+  /**
+   * Creates a validator which looks up the outcomes in the precomputed table
+   * of a model.
+   *
+   * @param outcomeTable the outcomes of the model
+   */
+  public NameFinderSequenceValidator(OutcomeTable outcomeTable) {
+    this.outcomeTable = outcomeTable;
+  }
+
+  public boolean validSequence(int i, String[] inputSequence,
+      String[] outcomesSequence, String outcome) {
+
+    int li = outcomesSequence.length - 1;
+    if (outcomeTable != null) {
+      int outcomeIndex = outcomeTable.getIndex(outcome);
+      int previousIndex = li == -1 ? -1 : outcomeTable.getIndex(outcomesSequence[li]);
+      if (outcomeIndex != -1 && (li == -1 || previousIndex != -1)) {
+        return outcomeTable.isValid(previousIndex, outcomeIndex);
+      }
+    }
+
+    // outcome is formatted like "cont" or "sometype-cont", so we
+    // can check if it ends with "cont".
+    if (outcome.endsWith(NameClassifier.CONTINUE)) {
+
+      if (li == -1) {
+        return false;
+      } else if (outcomesSequence[li].endsWith(NameClassifier.OTHER)) {
+        return false;
+      } else if (outcomesSequence[li].endsWith(NameClassifier.CONTINUE)) {
+        // if it is continue, we have to check if previous match was of the same type
+        String previousNameType = NameClassifier.extractNameType(outcomesSequence[li]);
+        String nameType = NameClassifier.extractNameType(outcome);
+        if( previousNameType != null || nameType != null ) {
+          if( nameType != null ) {
+            if( nameType.equals(previousNameType) ){
+              return true;
+            }
+          }
+          return false; // outcomes types are not equal
         }
       }
-      return false; // outcomes types are not equal
     }
+    return true;
   }
 }
-return true;
-}
-}
@@ -1,21 +1,28 @@
 package es.ehu.si.ixa.pipe.nerc.train;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Properties;
 
 import opennlp.model.AbstractModel;
+import opennlp.model.IndexHashTable;
 import opennlp.model.MaxentModel;
 import opennlp.tools.util.InvalidFormatException;
+import opennlp.tools.util.TrainingParameters;
 import opennlp.tools.util.model.ArtifactSerializer;
 import opennlp.tools.util.model.BaseModel;
 import opennlp.tools.util.model.ModelUtil;
+import es.ehu.si.ixa.pipe.nerc.features.PredicateFilter;
 
 /**
  * The {@link TokenNameFinderModel} is the model used
@@ -46,8 +53,22 @@ public class NameModel extends BaseModel {
   
   private static final String COMPONENT_NAME = "NameFinderME";
   private static final String MAXENT_MODEL_ENTRY_NAME = "nameFinder.model";
+  private static final String DENSE_MODEL_ENTRY_NAME = "nameFinder.densemodel";
  
   private static final String GENERATOR_DESCRIPTOR_ENTRY_NAME = "generator.featuregen";
+
+  /**
+   * The dense models built from the name finder model, by precision.
+   */
+  private Map<String, DenseModel> denseModels;
+  /**
+   * The name finder model converted from the dense model artifact.
+   */
+  private AbstractModel convertedModel;
+  /**
+   * The predicates of the model, for the feature generators.
+   */
+  private PredicateFilter predicateFilter;
  
   public NameModel(String languageCode, AbstractModel nameFinderModel,
       byte[] generatorDescriptor, Map<String, Object> resources, Map<String, String> manifestInfoEntries) {
@@ -101,10 +122,147 @@ public class NameModel extends BaseModel {
    *
    * @return the classification model
    */
-  public AbstractModel getNameFinderModel() {
-    return (AbstractModel) artifactMap.get(MAXENT_MODEL_ENTRY_NAME);
+  public synchronized AbstractModel getNameFinderModel() {
+    AbstractModel model = (AbstractModel) artifactMap.get(MAXENT_MODEL_ENTRY_NAME);
+    if (model == null && isDenseFormat()) {
+      if (convertedModel == null) {
+        convertedModel = ((DenseModel) artifactMap.get(DENSE_MODEL_ENTRY_NAME)).toAbstractModel();
+      }
+      model = convertedModel;
+    }
+    return model;
+  }
+
+  /**
+   * Checks whether the name finder model is stored in the binary format of
+   * {@link DenseModel}.
+   *
+   * @return true if the model has a dense model artifact
+   */
+  public boolean isDenseFormat() {
+    return artifactMap.get(DENSE_MODEL_ENTRY_NAME) instanceof DenseModel;
+  }
+
+  /**
+   * Retrieves the model used to tag: the dense model artifact, if any,
+   * otherwise the name finder model.
+   *
+   * @return the model
+   */
+  public MaxentModel getMaxentModel() {
+    if (isDenseFormat()) {
+      return (DenseModel) artifactMap.get(DENSE_MODEL_ENTRY_NAME);
+    }
+    return getNameFinderModel();
+  }
+
+  /**
+   * Retrieves the filter of the predicates of the model, built on the first
+   * call and shared by all the name finders using this model.
+   *
+   * @return the filter
+   */
+  public synchronized PredicateFilter getPredicateFilter() {
+    if (predicateFilter == null) {
+      predicateFilter = new PredicateFilter(getPredicateHashes());
+    }
+    return predicateFilter;
+  }
+
+  /**
+   * Retrieves the hashes of the predicates of the model, to build a
+   * {@link PredicateFilter} of several models.
+   *
+   * @return the hashes of the predicates
+   */
+  @SuppressWarnings("unchecked")
+  public int[] getPredicateHashes() {
+    MaxentModel model = getMaxentModel();
+    if (model instanceof DenseModel) {
+      return ((DenseModel) model).getPredicateHashes();
+    }
+    IndexHashTable<String> pmap = (IndexHashTable<String>) ((AbstractModel) model)
+        .getDataStructures()[1];
+    String[] predicates = new String[pmap.size()];
+    pmap.toArray(predicates);
+    int[] hashes = new int[predicates.length];
+    for (int i = 0; i < predicates.length; i++) {
+      hashes[i] = predicates[i].hashCode();
+    }
+    return hashes;
   }
   
+  /**
+   * Retrieves the name finder model with its parameters in flat arrays. The
+   * dense model is built on the first call for every precision and shared by
+   * all the name finders using this model. A dense model artifact is returned
+   * as it is, whatever the precision requested.
+   *
+   * @param precision the precision of the parameters, see {@link DenseModel}
+   * @return the dense model
+   */
+  public synchronized DenseModel getDenseModel(String precision) {
+    if (isDenseFormat()) {
+      return (DenseModel) artifactMap.get(DENSE_MODEL_ENTRY_NAME);
+    }
+    if (denseModels == null) {
+      denseModels = new HashMap<String, DenseModel>();
+    }
+    DenseModel denseModel = denseModels.get(precision);
+    if (denseModel == null) {
+      denseModel = new DenseModel(getNameFinderModel(), precision);
+      denseModels.put(precision, denseModel);
+    }
+    return denseModel;
+  }
+
+  /**
+   * Retrieves the feature parameters the model was trained with.
+   *
+   * @return the parameters in the properties file format, or null if the
+   *         model does not store them
+   */
+  public byte[] getGeneratorDescriptor() {
+    return (byte[]) artifactMap.get(GENERATOR_DESCRIPTOR_ENTRY_NAME);
+  }
+
+  /**
+   * Gets the parameters to create the feature generators of this model: the
+   * specified parameters with their feature parameters replaced by the ones
+   * stored in the model, if any. The lexicon paths are those of the specified
+   * parameters.
+   *
+   * @param params the parameters
+   * @return the parameters to create the feature generators
+   * @throws InvalidFormatException if the stored parameters can not be read
+   */
+  public TrainingParameters getFeatureParameters(TrainingParameters params)
+      throws InvalidFormatException {
+    byte[] descriptor = getGeneratorDescriptor();
+    if (descriptor == null) {
+      return params;
+    }
+    Properties features = new Properties();
+    try {
+      features.load(new ByteArrayInputStream(descriptor));
+    } catch (IOException e) {
+      throw new InvalidFormatException("Corrupt feature parameters!");
+    }
+    List<String> featureKeys = Arrays.asList(FixedTrainer.FEATURE_PARAMETERS);
+    TrainingParameters featureParams = new TrainingParameters();
+    for (Map.Entry<String, String> setting : params.getSettings().entrySet()) {
+      if (!featureKeys.contains(setting.getKey())) {
+        featureParams.put(setting.getKey(), setting.getValue());
+      }
+    }
+    for (String key : features.stringPropertyNames()) {
+      if (featureKeys.contains(key)) {
+        featureParams.put(key, features.getProperty(key));
+      }
+    }
+    return featureParams;
+  }
+
   public NameModel updateFeatureGenerator(byte descriptor[]) {
         
     NameModel model = new NameModel(getLanguage(), getNameFinderModel(),
@@ -118,11 +276,55 @@ public class NameModel extends BaseModel {
     return model;
   }
   
+  /**
+   * Creates a copy of this model, with the same resources and manifest, which
+   * uses another name finder model, e.g., a compressed one.
+   *
+   * @param nameFinderModel the new name finder model
+   * @return the new model
+   */
+  public NameModel updateNameFinderModel(AbstractModel nameFinderModel) {
+
+    NameModel model = new NameModel(getLanguage(), nameFinderModel,
+        Collections.<String, Object>emptyMap(), Collections.<String, String>emptyMap());
+
+    model.artifactMap.clear();
+    model.artifactMap.putAll(artifactMap);
+    model.artifactMap.remove(DENSE_MODEL_ENTRY_NAME);
+    model.artifactMap.put(MAXENT_MODEL_ENTRY_NAME, nameFinderModel);
+
+    return model;
+  }
+
+  /**
+   * Creates a copy of this model which stores the name finder model in the
+   * binary format of {@link DenseModel}. Such models are loaded with bulk
+   * array reads, and their predicates are decoded on first use, instead of
+   * parsing the whole OpenNLP model.
+   *
+   * @param precision the precision of the parameters, see {@link DenseModel}
+   * @return the new model
+   */
+  public NameModel toDenseFormat(String precision) {
+
+    AbstractModel nameFinderModel = getNameFinderModel();
+    NameModel model = new NameModel(getLanguage(), nameFinderModel,
+        Collections.<String, Object>emptyMap(), Collections.<String, String>emptyMap());
+
+    model.artifactMap.clear();
+    model.artifactMap.putAll(artifactMap);
+    model.artifactMap.remove(MAXENT_MODEL_ENTRY_NAME);
+    model.artifactMap.put(DENSE_MODEL_ENTRY_NAME, new DenseModel(nameFinderModel, precision));
+
+    return model;
+  }
+
   @Override
   protected void createArtifactSerializers(Map<String, ArtifactSerializer> serializers) {
     super.createArtifactSerializers(serializers);
     
     serializers.put("featuregen", new ByteArraySerializer());
+    serializers.put("densemodel", new DenseModelSerializer());
   }
   
   public static Map<String, ArtifactSerializer> createArtifactSerializers()  {
@@ -134,6 +336,7 @@ public class NameModel extends BaseModel {
     Map<String, ArtifactSerializer> serializers = BaseModel.createArtifactSerializers();
     
     serializers.put("featuregen", new ByteArraySerializer());
+    serializers.put("densemodel", new DenseModelSerializer());
     
     return serializers;
   }
@@ -186,6 +389,9 @@ public class NameModel extends BaseModel {
       AbstractModel model = (AbstractModel) artifactMap.get(MAXENT_MODEL_ENTRY_NAME);
       isModelValid(model);
     }
+    else if (artifactMap.get(DENSE_MODEL_ENTRY_NAME) instanceof DenseModel) {
+      isModelValid((DenseModel) artifactMap.get(DENSE_MODEL_ENTRY_NAME));
+    }
     else {
       throw new InvalidFormatException("Token Name Finder model is incomplete!");
     }
@@ -0,0 +1,167 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.maxent.GISModel;
+import opennlp.model.AbstractModel;
+import opennlp.model.Context;
+import opennlp.model.IndexHashTable;
+import opennlp.perceptron.PerceptronModel;
+
+/**
+ * Makes a trained {@link NameModel} smaller without retraining: the
+ * parameters whose absolute value is below a threshold are dropped, together
+ * with the predicates left without parameters, and the remaining parameters
+ * can be rounded to a grid of 8 or 16 bit integer levels. As in
+ * {@link DenseModel}, every predicate has its own grid, whose step is its
+ * largest absolute parameter over the largest integer, and the parameters
+ * rounded to zero are dropped too. The rounded parameters only take less
+ * memory once stored in the {@link DenseModel} format with the same number
+ * of bits.
+ *
+ * @author ragerri
+ */
+public class NameModelCompressor {
+
+  private final double threshold;
+  private final int bits;
+
+  private int numPredicates;
+  private int numKeptPredicates;
+  private int numParameters;
+  private int numKeptParameters;
+
+  /**
+   * Creates a compressor.
+   *
+   * @param threshold the minimum absolute value of the parameters kept
+   * @param bits 8 or 16 to quantise the parameters, 0 to keep their values
+   */
+  public NameModelCompressor(double threshold, int bits) {
+    if (threshold < 0) {
+      throw new IllegalArgumentException("threshold must not be negative!");
+    }
+    if (bits != 0 && bits != 8 && bits != 16) {
+      throw new IllegalArgumentException("bits must be 0, 8 or 16!");
+    }
+    this.threshold = threshold;
+    this.bits = bits;
+  }
+
+  /**
+   * Compresses the name finder model of a {@link NameModel}.
+   *
+   * @param nameModel the model
+   * @return a copy of the model with the compressed name finder model
+   */
+  @SuppressWarnings("unchecked")
+  public NameModel compress(NameModel nameModel) {
+    AbstractModel model = nameModel.getNameFinderModel();
+    if (!DenseModel.isSupported(model)) {
+      throw new IllegalArgumentException("Unsupported model type: "
+          + model.getModelType());
+    }
+    Object[] data = model.getDataStructures();
+    Context[] params = (Context[]) data[0];
+    IndexHashTable<String> pmap = (IndexHashTable<String>) data[1];
+    String[] predicates = new String[pmap.size()];
+    pmap.toArray(predicates);
+    String[] outcomeNames = (String[]) data[2];
+
+    int levels = bits > 0 ? (1 << (bits - 1)) - 1 : 0;
+    numPredicates = predicates.length;
+    numKeptPredicates = 0;
+    numParameters = 0;
+    numKeptParameters = 0;
+    List<String> keptPredicates = new ArrayList<String>();
+    List<Context> keptParams = new ArrayList<Context>();
+    for (int p = 0; p < predicates.length; p++) {
+      int[] outcomes = params[p].getOutcomes();
+      double[] values = params[p].getParameters();
+      numParameters += values.length;
+      double scale = 1;
+      if (bits > 0) {
+        double max = 0;
+        for (double value : values) {
+          max = Math.max(max, Math.abs(value));
+        }
+        scale = max == 0 ? 1 : max / levels;
+      }
+      int[] newOutcomes = new int[values.length];
+      double[] newValues = new double[values.length];
+      int kept = 0;
+      for (int i = 0; i < values.length; i++) {
+        double value = values[i];
+        if (Math.abs(value) < threshold) {
+          continue;
+        }
+        if (bits > 0) {
+          long level = Math.round(value / scale);
+          if (level == 0) {
+            continue;
+          }
+          value = level * scale;
+        }
+        newOutcomes[kept] = outcomes[i];
+        newValues[kept] = value;
+        kept++;
+      }
+      if (kept > 0) {
+        int[] predOutcomes = new int[kept];
+        double[] predValues = new double[kept];
+        System.arraycopy(newOutcomes, 0, predOutcomes, 0, kept);
+        System.arraycopy(newValues, 0, predValues, 0, kept);
+        keptPredicates.add(predicates[p]);
+        keptParams.add(new Context(predOutcomes, predValues));
+        numKeptParameters += kept;
+      }
+    }
+    numKeptPredicates = keptPredicates.size();
+
+    Context[] newParams = keptParams.toArray(new Context[keptParams.size()]);
+    String[] newPredicates = keptPredicates.toArray(new String[keptPredicates.size()]);
+    AbstractModel compressed;
+    if (model.getModelType() == AbstractModel.ModelType.Perceptron) {
+      compressed = new PerceptronModel(newParams, newPredicates, outcomeNames);
+    } else {
+      compressed = new GISModel(newParams, newPredicates, outcomeNames,
+          (Integer) data[3], (Double) data[4]);
+    }
+    return nameModel.updateNameFinderModel(compressed);
+  }
+
+  /**
+   * Describes the size reduction of the last compressed model.
+   *
+   * @return the number of predicates and parameters before and after
+   */
+  public String getStatistics() {
+    StringBuilder sb = new StringBuilder();
+    sb.append("Predicates: ").append(numPredicates).append(" -> ")
+        .append(numKeptPredicates).append("\n");
+    sb.append("Parameters: ").append(numParameters).append(" -> ")
+        .append(numKeptParameters);
+    if (bits > 0) {
+      sb.append(" (quantised to ").append(bits).append(" bits)");
+    }
+    return sb.toString();
+  }
+
+}
@@ -0,0 +1,315 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.Span;
+
+/**
+ * The BIO role and the name type of every outcome of a name finder model,
+ * computed once per model so that sequence validation and span decoding work
+ * on outcome indexes instead of parsing the outcome strings. The outcomes
+ * of the types not requested can be masked: they are never valid, so they
+ * are never decoded nor turned into spans.
+ *
+ * @author ragerri
+ */
+public class OutcomeTable {
+
+  /**
+   * The role of an outcome which is not a start, continue or other outcome.
+   */
+  public static final int NONE = -1;
+  public static final int OTHER = 0;
+  public static final int START = 1;
+  public static final int CONTINUE = 2;
+
+  private final String[] outcomes;
+  private final int[] roles;
+  /**
+   * The index of the type of every outcome in {@link #types}, -1 if untyped.
+   */
+  private final int[] typeIds;
+  private final String[] types;
+  private final Map<String, Integer> outcomeIndex;
+  /**
+   * Whether every outcome can be decoded.
+   */
+  private final boolean[] allowed;
+  private final int numMasked;
+  /**
+   * Whether an outcome can follow another one, indexed by the previous outcome
+   * plus one (zero is the start of the sentence) and the outcome.
+   */
+  private final boolean[][] validTransitions;
+
+  /**
+   * Builds the table for the outcomes of a model.
+   *
+   * @param model the name finder model
+   */
+  public OutcomeTable(MaxentModel model) {
+    this(getOutcomes(model), null);
+  }
+
+  /**
+   * Builds the table for the outcomes of a model, masking the typed outcomes
+   * whose type is not requested.
+   *
+   * @param model the name finder model
+   * @param allowedTypes the types decoded, or null to decode every type
+   */
+  public OutcomeTable(MaxentModel model, String[] allowedTypes) {
+    this(getOutcomes(model), allowedTypes);
+  }
+
+  /**
+   * Builds the table for the given outcomes.
+   *
+   * @param outcomes the outcomes, in model order
+   */
+  public OutcomeTable(String[] outcomes) {
+    this(outcomes, null);
+  }
+
+  /**
+   * Builds the table for the given outcomes, masking the typed outcomes
+   * whose type is not requested. The other outcome and the untyped outcomes
+   * are never masked.
+   *
+   * @param outcomes the outcomes, in model order
+   * @param allowedTypes the types decoded, or null to decode every type
+   */
+  public OutcomeTable(String[] outcomes, String[] allowedTypes) {
+    this.outcomes = outcomes.clone();
+    this.roles = new int[outcomes.length];
+    this.typeIds = new int[outcomes.length];
+    this.outcomeIndex = new HashMap<String, Integer>(outcomes.length * 2);
+    List<String> typeList = new ArrayList<String>();
+    for (int i = 0; i < outcomes.length; i++) {
+      outcomeIndex.put(outcomes[i], i);
+      roles[i] = getRole(outcomes[i]);
+      String type = NameClassifier.extractNameType(outcomes[i]);
+      if (type == null) {
+        typeIds[i] = -1;
+      } else {
+        int typeId = typeList.indexOf(type);
+        if (typeId == -1) {
+          typeId = typeList.size();
+          typeList.add(type);
+        }
+        typeIds[i] = typeId;
+      }
+    }
+    this.types = typeList.toArray(new String[typeList.size()]);
+
+    this.allowed = new boolean[outcomes.length];
+    Set<String> allowedTypeSet = allowedTypes == null ? null
+        : new HashSet<String>(Arrays.asList(allowedTypes));
+    int masked = 0;
+    for (int i = 0; i < outcomes.length; i++) {
+      allowed[i] = allowedTypeSet == null || typeIds[i] == -1
+          || allowedTypeSet.contains(types[typeIds[i]]);
+      if (!allowed[i]) {
+        masked++;
+      }
+    }
+    this.numMasked = masked;
+
+    validTransitions = new boolean[outcomes.length + 1][outcomes.length];
+    for (int previous = -1; previous < outcomes.length; previous++) {
+      for (int outcome = 0; outcome < outcomes.length; outcome++) {
+        validTransitions[previous + 1][outcome] = computeValid(previous, outcome);
+      }
+    }
+  }
+
+  private static String[] getOutcomes(MaxentModel model) {
+    String[] outcomes = new String[model.getNumOutcomes()];
+    for (int i = 0; i < outcomes.length; i++) {
+      outcomes[i] = model.getOutcome(i);
+    }
+    return outcomes;
+  }
+
+  /**
+   * Gets the BIO role of an outcome string.
+   *
+   * @param outcome the outcome
+   * @return the role
+   */
+  public static int getRole(String outcome) {
+    if (outcome.endsWith(NameClassifier.CONTINUE)) {
+      return CONTINUE;
+    } else if (outcome.endsWith(NameClassifier.START)) {
+      return START;
+    } else if (outcome.endsWith(NameClassifier.OTHER)) {
+      return OTHER;
+    }
+    return NONE;
+  }
+
+  /**
+   * The rules of {@link NameFinderSequenceValidator}: a continue outcome must
+   * follow a start or continue outcome, and the same type as a previous
+   * continue outcome. Masked outcomes are never valid.
+   */
+  private boolean computeValid(int previous, int outcome) {
+    if (!allowed[outcome]) {
+      return false;
+    }
+    if (roles[outcome] == CONTINUE) {
+      if (previous == -1) {
+        return false;
+      } else if (roles[previous] == OTHER) {
+        return false;
+      } else if (roles[previous] == CONTINUE) {
+        if (typeIds[previous] != -1 || typeIds[outcome] != -1) {
+          return typeIds[outcome] != -1 && typeIds[outcome] == typeIds[previous];
+        }
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Checks whether an outcome can follow another one.
+   *
+   * @param previous the previous outcome, or -1 at the start of the sentence
+   * @param outcome the outcome
+   * @return true if the sequence is valid
+   */
+  public boolean isValid(int previous, int outcome) {
+    return validTransitions[previous + 1][outcome];
+  }
+
+  /**
+   * Checks whether an outcome is decoded, that is, it is not masked.
+   *
+   * @param outcome the outcome
+   * @return true if the outcome is not masked
+   */
+  public boolean isAllowed(int outcome) {
+    return allowed[outcome];
+  }
+
+  /**
+   * Gets the number of masked outcomes.
+   *
+   * @return the number of outcomes whose type is not decoded
+   */
+  public int getNumMasked() {
+    return numMasked;
+  }
+
+  public int getNumOutcomes() {
+    return outcomes.length;
+  }
+
+  public String getOutcome(int outcome) {
+    return outcomes[outcome];
+  }
+
+  /**
+   * Gets the index of an outcome.
+   *
+   * @param outcome the outcome string
+   * @return the index, or -1 if the outcome is not in the model
+   */
+  public int getIndex(String outcome) {
+    Integer index = outcomeIndex.get(outcome);
+    return index == null ? -1 : index;
+  }
+
+  public int getRole(int outcome) {
+    return roles[outcome];
+  }
+
+  /**
+   * Gets the type id of an outcome.
+   *
+   * @param outcome the outcome
+   * @return the index of the type in {@link #getTypes()}, or -1 if untyped
+   */
+  public int getTypeId(int outcome) {
+    return typeIds[outcome];
+  }
+
+  /**
+   * Gets the name type of an outcome.
+   *
+   * @param outcome the outcome
+   * @return the type, or null if untyped
+   */
+  public String getType(int outcome) {
+    return typeIds[outcome] == -1 ? null : types[typeIds[outcome]];
+  }
+
+  /**
+   * The name types of the model, indexed by type id.
+   *
+   * @return the types
+   */
+  public String[] getTypes() {
+    return types.clone();
+  }
+
+  /**
+   * Converts a sequence of outcomes into name spans. Masked outcomes are
+   * read as other outcomes, so no span of a masked type is built.
+   *
+   * @param sequence the outcome indexes
+   * @param length the number of outcomes of the sequence
+   * @return the spans
+   */
+  public Span[] toSpans(int[] sequence, int length) {
+    int start = -1;
+    int end = -1;
+    List<Span> spans = new ArrayList<Span>(length);
+    for (int li = 0; li < length; li++) {
+      int role = allowed[sequence[li]] ? roles[sequence[li]] : OTHER;
+      if (role == START) {
+        if (start != -1) {
+          spans.add(new Span(start, end, getType(sequence[li - 1])));
+        }
+        start = li;
+        end = li + 1;
+      } else if (role == CONTINUE) {
+        end = li + 1;
+      } else if (role == OTHER) {
+        if (start != -1) {
+          spans.add(new Span(start, end, getType(sequence[li - 1])));
+          start = -1;
+          end = -1;
+        }
+      }
+    }
+    if (start != -1) {
+      spans.add(new Span(start, end, getType(sequence[length - 1])));
+    }
+    return spans.toArray(new Span[spans.size()]);
+  }
+
+}
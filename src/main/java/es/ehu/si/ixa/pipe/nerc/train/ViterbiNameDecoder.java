@@ -0,0 +1,165 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.util.Arrays;
+
+import opennlp.model.MaxentModel;
+import opennlp.tools.util.SequenceValidator;
+import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+
+/**
+ * Exact second order Viterbi decoding. The context of a token depends on the
+ * tokens of the sentence and on the two previous outcomes only, so the best
+ * sequence is found by dynamic programming over the states made of the
+ * outcome of a token and the outcome of the previous token. Every state is
+ * extended with the outcomes allowed by the {@link OutcomeTable}; custom
+ * sequence validators, which can look at the whole history, are not
+ * supported.
+ *
+ * @author ragerri
+ */
+public class ViterbiNameDecoder extends NameDecoder {
+
+  private final int numStates;
+  /**
+   * The best log score of every state of the current and next positions,
+   * indexed by {@link #state(int, int)}.
+   */
+  private double[] scores;
+  private double[] nextScores;
+  /**
+   * The outcome two positions before of the best path to every state of
+   * every position.
+   */
+  private int[][] backPointers = new int[0][];
+  /**
+   * The probability of the last outcome of the best path to every state of
+   * every position.
+   */
+  private double[][] stateProbs = new double[0][];
+
+  /**
+   * Creates a Viterbi decoder.
+   *
+   * @param model the model
+   * @param contextGenerator the context generator
+   * @param outcomeTable the outcomes of the model
+   * @param sequenceValidator null or a {@link NameFinderSequenceValidator}
+   */
+  public ViterbiNameDecoder(MaxentModel model,
+      NameContextGenerator contextGenerator, OutcomeTable outcomeTable,
+      SequenceValidator<String> sequenceValidator) {
+    super(model, contextGenerator, outcomeTable, sequenceValidator);
+    if (hasSequenceValidator()) {
+      throw new IllegalArgumentException(
+          "Viterbi decoding only supports the name finder sequence validator!");
+    }
+    this.numStates = numOutcomes * (numOutcomes + 1);
+    this.scores = new double[numStates];
+    this.nextScores = new double[numStates];
+  }
+
+  /**
+   * The state of an outcome preceded by another one.
+   */
+  private int state(int outcome, int previous) {
+    return outcome * (numOutcomes + 1) + previous + 1;
+  }
+
+  public void decode(String[] tokens, Object[] additionalContext,
+      int[] outcomes, double[] probs) {
+    int length = tokens.length;
+    if (length == 0) {
+      return;
+    }
+    startSentence(tokens, additionalContext);
+    ensureCapacity(length);
+
+    Arrays.fill(scores, Double.NEGATIVE_INFINITY);
+    double[] first = probabilities(0, -1, -1);
+    for (int outcome = 0; outcome < numOutcomes; outcome++) {
+      if (isValid(0, -1, outcome, null)) {
+        int state = state(outcome, -1);
+        scores[state] = Math.log(first[outcome]);
+        stateProbs[0][state] = first[outcome];
+      }
+    }
+
+    for (int i = 1; i < length; i++) {
+      Arrays.fill(nextScores, Double.NEGATIVE_INFINITY);
+      int[] back = backPointers[i];
+      double[] nextProbs = stateProbs[i];
+      for (int po = 0; po < numOutcomes; po++) {
+        for (int ppo = -1; ppo < numOutcomes; ppo++) {
+          double score = scores[state(po, ppo)];
+          if (score == Double.NEGATIVE_INFINITY) {
+            continue;
+          }
+          double[] outcomeProbs = probabilities(i, po, ppo);
+          for (int outcome = 0; outcome < numOutcomes; outcome++) {
+            if (!isValid(i, po, outcome, null)) {
+              continue;
+            }
+            double next = score + Math.log(outcomeProbs[outcome]);
+            int nextState = state(outcome, po);
+            if (next > nextScores[nextState]) {
+              nextScores[nextState] = next;
+              back[nextState] = ppo;
+              nextProbs[nextState] = outcomeProbs[outcome];
+            }
+          }
+        }
+      }
+      double[] swap = scores;
+      scores = nextScores;
+      nextScores = swap;
+    }
+
+    int best = -1;
+    for (int state = 0; state < numStates; state++) {
+      if (scores[state] != Double.NEGATIVE_INFINITY
+          && (best == -1 || scores[state] > scores[best])) {
+        best = state;
+      }
+    }
+    if (best == -1) {
+      throw new IllegalStateException("No valid outcome sequence!");
+    }
+    int outcome = best / (numOutcomes + 1);
+    int previous = best % (numOutcomes + 1) - 1;
+    for (int i = length - 1; i >= 0; i--) {
+      int state = state(outcome, previous);
+      outcomes[i] = outcome;
+      probs[i] = stateProbs[i][state];
+      if (i > 0) {
+        int beforePrevious = backPointers[i][state];
+        outcome = previous;
+        previous = beforePrevious;
+      }
+    }
+  }
+
+  private void ensureCapacity(int length) {
+    if (backPointers.length < length) {
+      int capacity = Math.max(length, backPointers.length * 2);
+      backPointers = new int[capacity][numStates];
+      stateProbs = new double[capacity][numStates];
+    }
+  }
+
+}
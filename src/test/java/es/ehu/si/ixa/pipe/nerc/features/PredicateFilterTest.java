@@ -0,0 +1,106 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.features;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests that {@link PredicateFilter} hashes the features as
+ * {@link String#hashCode()} does.
+ *
+ * @author ragerri
+ */
+public class PredicateFilterTest {
+
+  private static final String[][] FEATURES = {
+      { "bcw=", "john", "smith" },
+      { "tcw=", "lower", "initcap", "digits" },
+      { "fgc=", "a", "", "b", "c", "d" },
+      { "p1w=", "mañana" },
+      { "w=", "東京", "Zürich" },
+      { "", "" } };
+
+  private static String join(String[] feature) {
+    StringBuilder sb = new StringBuilder(feature[0]);
+    for (int i = 1; i < feature.length; i++) {
+      if (i > 1) {
+        sb.append(',');
+      }
+      sb.append(feature[i]);
+    }
+    return sb.toString();
+  }
+
+  private static String[] values(String[] feature) {
+    String[] values = new String[feature.length - 1];
+    System.arraycopy(feature, 1, values, 0, values.length);
+    return values;
+  }
+
+  @Test
+  public void testExtendHashesAsString() {
+    for (String[] feature : FEATURES) {
+      String prefix = feature[0];
+      String rest = join(feature).substring(prefix.length());
+      assertEquals(join(feature).hashCode(),
+          PredicateFilter.extend(prefix.hashCode(), rest));
+    }
+  }
+
+  @Test
+  public void testAddFeatureKeepsPredicates() {
+    int[] hashes = new int[FEATURES.length];
+    for (int i = 0; i < FEATURES.length; i++) {
+      hashes[i] = join(FEATURES[i]).hashCode();
+    }
+    PredicateFilter filter = new PredicateFilter(hashes);
+    List<String> features = new ArrayList<String>();
+    for (String[] feature : FEATURES) {
+      assertTrue(filter.mightContain(join(feature)));
+      PredicateFilter.addFeature(features, filter, feature[0], values(feature));
+      assertEquals(join(feature), features.get(features.size() - 1));
+    }
+    assertEquals(FEATURES.length, features.size());
+  }
+
+  @Test
+  public void testAddFeatureDropsOtherFeatures() {
+    PredicateFilter filter = new PredicateFilter(new int[] { "bcw=john,smith"
+        .hashCode() }, new int[] { "w=x".hashCode() });
+    List<String> features = new ArrayList<String>();
+    PredicateFilter.addFeature(features, filter, "bcw=", "smith", "john");
+    PredicateFilter.addFeature(features, filter, "bcw=", "john,smith");
+    PredicateFilter.addFeature(features, filter, "w=", "y");
+    PredicateFilter.addFeature(features, filter, "w=", "x");
+    assertEquals(2, features.size());
+    assertEquals("bcw=john,smith", features.get(0));
+    assertEquals("w=x", features.get(1));
+    assertFalse(filter.mightContain("w=y"));
+
+    // without a filter every feature is added
+    PredicateFilter.addFeature(features, null, "w=", "y");
+    assertEquals("w=y", features.get(2));
+  }
+
+}
@@ -0,0 +1,115 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.formats;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.util.CollectionObjectStream;
+import opennlp.tools.util.ObjectStream;
+import opennlp.tools.util.Span;
+
+import org.junit.Test;
+
+/**
+ * Tests that a corpus written in the binary format reads back the same.
+ *
+ * @author ragerri
+ */
+public class BinaryCorpusSampleStreamTest {
+
+  private static List<CorpusSample> createSamples() {
+    List<CorpusSample> samples = new ArrayList<CorpusSample>();
+    samples.add(new CorpusSample(new String[] { "John", "Smith", "lives",
+        "in", "London", "." }, new Span[] { new Span(0, 2, "person"),
+        new Span(4, 5, "location") }, true));
+    samples.add(new CorpusSample(new String[] { "London", "is", "big", "." },
+        new Span[] { new Span(0, 1, "location") }, false));
+    // untyped names and non ASCII tokens
+    samples.add(new CorpusSample(new String[] { "Mañana", "llega", "Ñandú",
+        "a", "Zürich", "東京" }, new Span[] { new Span(2, 3),
+        new Span(4, 6, "location") }, false));
+    samples.add(new CorpusSample(new String[0], null, true));
+    // more than 127 tokens and names, and a name starting past 127
+    String[] sentence = new String[300];
+    List<Span> names = new ArrayList<Span>();
+    for (int i = 0; i < sentence.length; i++) {
+      sentence[i] = "w" + (i % 150);
+      if (i % 2 == 0) {
+        names.add(new Span(i, i + 1, i % 4 == 0 ? "person" : "misc"));
+      }
+    }
+    samples.add(new CorpusSample(sentence, names.toArray(new Span[names
+        .size()]), false));
+    return samples;
+  }
+
+  private static byte[] write(List<CorpusSample> samples) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    BinaryCorpusSampleStream.write(new CollectionObjectStream<CorpusSample>(
+        samples), out);
+    return out.toByteArray();
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    List<CorpusSample> samples = createSamples();
+    ObjectStream<CorpusSample> stream = new BinaryCorpusSampleStream(
+        write(samples));
+    for (CorpusSample expected : samples) {
+      assertEquals(expected, stream.read());
+    }
+    assertNull(stream.read());
+
+    // the samples are read again after a reset
+    stream.reset();
+    for (CorpusSample expected : samples) {
+      assertEquals(expected, stream.read());
+    }
+    assertNull(stream.read());
+    stream.close();
+  }
+
+  @Test
+  public void testWordsAreShared() throws IOException {
+    List<CorpusSample> samples = createSamples();
+    ObjectStream<CorpusSample> stream = new BinaryCorpusSampleStream(
+        write(samples));
+    CorpusSample first = stream.read();
+    CorpusSample second = stream.read();
+    assertSame(first.getSentence()[4], second.getSentence()[0]);
+    stream.close();
+  }
+
+  @Test
+  public void testNotABinaryCorpus() {
+    try {
+      new BinaryCorpusSampleStream("John NNP B-PER\n".getBytes());
+      fail("Read a text corpus as a binary corpus");
+    } catch (IOException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,123 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import opennlp.model.AbstractModel;
+import opennlp.tools.util.InvalidFormatException;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests the conversion of a model into a {@link DenseModel} and the binary
+ * dense format.
+ *
+ * @author ragerri
+ */
+public class DenseModelTest {
+
+  private static AbstractModel model;
+  private static List<String[]> contexts;
+
+  @BeforeClass
+  public static void trainModel() throws Exception {
+    model = SmallModels.getModel().getNameFinderModel();
+    // groups of predicates of the model, with an unknown one
+    String[] predicates = new DenseModel(model, DenseModel.DOUBLE).getPredicates();
+    contexts = new ArrayList<String[]>();
+    for (int start = 0; start < predicates.length; start += 7) {
+      String[] context = Arrays.copyOfRange(predicates, start,
+          Math.min(start + 8, predicates.length) + 1);
+      context[context.length - 1] = "unknown=predicate";
+      contexts.add(context);
+    }
+  }
+
+  private static DenseModel roundTrip(DenseModel denseModel) throws Exception {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    denseModel.serialize(out);
+    return DenseModel.deserialize(out.toByteArray());
+  }
+
+  @Test
+  public void testDoubleEvaluatesAsModel() {
+    DenseModel denseModel = new DenseModel(model, DenseModel.DOUBLE);
+    for (String[] context : contexts) {
+      assertArrayEquals(model.eval(context), denseModel.eval(context), 1e-12);
+    }
+  }
+
+  @Test
+  public void testDoubleRoundTrip() throws Exception {
+    DenseModel denseModel = new DenseModel(model, DenseModel.DOUBLE);
+    DenseModel readModel = roundTrip(denseModel);
+
+    assertEquals(DenseModel.DOUBLE, readModel.getPrecision());
+    assertEquals(denseModel.isPerceptron(), readModel.isPerceptron());
+    assertEquals(denseModel.getCorrectionConstant(),
+        readModel.getCorrectionConstant());
+    assertEquals(denseModel.getCorrectionParam(),
+        readModel.getCorrectionParam(), 0);
+    assertEquals(denseModel.getNumOutcomes(), readModel.getNumOutcomes());
+    for (int i = 0; i < denseModel.getNumOutcomes(); i++) {
+      assertEquals(denseModel.getOutcome(i), readModel.getOutcome(i));
+    }
+    String[] predicates = denseModel.getPredicates();
+    assertArrayEquals(predicates, readModel.getPredicates());
+    for (int p = 0; p < predicates.length; p++) {
+      assertEquals(p, readModel.getPredicateId(predicates[p]));
+    }
+    assertEquals(-1, readModel.getPredicateId("unknown=predicate"));
+    for (String[] context : contexts) {
+      assertArrayEquals(denseModel.eval(context), readModel.eval(context), 0);
+    }
+  }
+
+  @Test
+  public void testQuantisedRoundTrip() throws Exception {
+    for (String precision : new String[] { DenseModel.FLOAT, DenseModel.INT16,
+        DenseModel.INT8 }) {
+      DenseModel denseModel = new DenseModel(model, precision);
+      DenseModel readModel = roundTrip(denseModel);
+      assertEquals(precision, readModel.getPrecision());
+      for (String[] context : contexts) {
+        assertArrayEquals(precision, denseModel.eval(context),
+            readModel.eval(context), 0);
+      }
+    }
+  }
+
+  @Test
+  public void testNotADenseModel() {
+    try {
+      DenseModel.deserialize(new byte[] { 'N', 'E', 'R', 'C', 0, 0, 0, 1 });
+      fail("Read a corpus as a dense model");
+    } catch (InvalidFormatException e) {
+      // expected
+    }
+  }
+
+}
@@ -0,0 +1,105 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import opennlp.model.AbstractModel;
+import opennlp.tools.util.BeamSearch;
+import opennlp.tools.util.Sequence;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import es.ehu.si.ixa.pipe.nerc.features.NameContextGenerator;
+
+/**
+ * Checks the decoders against the OpenNLP {@link BeamSearch} on a small
+ * trained model.
+ *
+ * @author ragerri
+ */
+public class NameDecoderTest {
+
+  /**
+   * The decoders sum the static features once per token, so the
+   * probabilities may differ from those of the OpenNLP model in the last
+   * bits.
+   */
+  private static final double DELTA = 1e-9;
+
+  private static AbstractModel model;
+  private static OutcomeTable outcomeTable;
+
+  @BeforeClass
+  public static void trainModel() throws Exception {
+    model = SmallModels.getModel().getNameFinderModel();
+    outcomeTable = new OutcomeTable(model);
+  }
+
+  private static NameContextGenerator createContextGenerator() {
+    return new DefaultNameContextGenerator(SmallModels.createFeatureGenerator());
+  }
+
+  @Test
+  public void testBeamDecoderMatchesBeamSearch() {
+    for (int beamSize : new int[] { 1, 2, 3, 5 }) {
+      BeamSearch<String> beamSearch = new BeamSearch<String>(beamSize,
+          createContextGenerator(), model, new NameFinderSequenceValidator(),
+          beamSize);
+      BeamNameDecoder decoder = new BeamNameDecoder(model,
+          createContextGenerator(), outcomeTable, null, beamSize);
+      for (String[] tokens : SmallModels.TEST_SENTENCES) {
+        Sequence expected = beamSearch.bestSequence(tokens, null);
+        int[] outcomes = new int[tokens.length];
+        double[] probs = new double[tokens.length];
+        decoder.decode(tokens, null, outcomes, probs);
+
+        List<String> expectedOutcomes = expected.getOutcomes();
+        assertEquals(expectedOutcomes.size(), tokens.length);
+        for (int i = 0; i < tokens.length; i++) {
+          assertEquals("beam " + beamSize + ", token " + i,
+              expectedOutcomes.get(i), outcomeTable.getOutcome(outcomes[i]));
+        }
+        assertArrayEquals("beam " + beamSize, expected.getProbs(), probs, DELTA);
+      }
+    }
+  }
+
+  @Test
+  public void testGreedyDecoderMatchesBeamSizeOne() {
+    GreedyNameDecoder greedy = new GreedyNameDecoder(model,
+        createContextGenerator(), outcomeTable, null);
+    BeamNameDecoder beam = new BeamNameDecoder(model, createContextGenerator(),
+        outcomeTable, null, 1);
+    for (String[] tokens : SmallModels.TEST_SENTENCES) {
+      int[] greedyOutcomes = new int[tokens.length];
+      double[] greedyProbs = new double[tokens.length];
+      greedy.decode(tokens, null, greedyOutcomes, greedyProbs);
+      int[] beamOutcomes = new int[tokens.length];
+      double[] beamProbs = new double[tokens.length];
+      beam.decode(tokens, null, beamOutcomes, beamProbs);
+
+      assertArrayEquals(beamOutcomes, greedyOutcomes);
+      assertArrayEquals(beamProbs, greedyProbs, 0);
+    }
+  }
+
+}
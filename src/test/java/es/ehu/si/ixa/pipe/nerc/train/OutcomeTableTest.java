@@ -0,0 +1,86 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import opennlp.tools.util.Span;
+
+import org.junit.Test;
+
+/**
+ * Tests the validation and span conversion of {@link OutcomeTable} against
+ * {@link NameFinderSequenceValidator} and the OpenNLP rules.
+ *
+ * @author ragerri
+ */
+public class OutcomeTableTest {
+
+  private static final String[] OUTCOMES = { "other", "person-start",
+      "person-cont", "location-start", "location-cont", "start", "cont" };
+
+  private final OutcomeTable outcomeTable = new OutcomeTable(OUTCOMES);
+
+  private int index(String outcome) {
+    return outcomeTable.getIndex(outcome);
+  }
+
+  @Test
+  public void testIsValidAsSequenceValidator() {
+    NameFinderSequenceValidator validator = new NameFinderSequenceValidator();
+    String[] tokens = { "a", "b" };
+    for (int outcome = 0; outcome < OUTCOMES.length; outcome++) {
+      assertEquals(OUTCOMES[outcome], validator.validSequence(0, tokens,
+          new String[0], OUTCOMES[outcome]), outcomeTable.isValid(-1, outcome));
+      for (int previous = 0; previous < OUTCOMES.length; previous++) {
+        assertEquals(OUTCOMES[previous] + " " + OUTCOMES[outcome],
+            validator.validSequence(1, tokens,
+                new String[] { OUTCOMES[previous] }, OUTCOMES[outcome]),
+            outcomeTable.isValid(previous, outcome));
+      }
+    }
+  }
+
+  @Test
+  public void testToSpans() {
+    int[] sequence = { index("person-start"), index("person-cont"),
+        index("other"), index("location-start"), index("location-start"),
+        index("location-cont"), index("start"), index("person-start") };
+    Span[] expected = { new Span(0, 2, "person"), new Span(3, 4, "location"),
+        new Span(4, 6, "location"), new Span(6, 7, null),
+        new Span(7, 8, "person") };
+    assertArrayEquals(expected, outcomeTable.toSpans(sequence, sequence.length));
+    assertArrayEquals(new Span[] { new Span(0, 2, "person") },
+        outcomeTable.toSpans(sequence, 2));
+  }
+
+  @Test
+  public void testMaskedOutcomes() {
+    OutcomeTable masked = new OutcomeTable(OUTCOMES, new String[] { "person" });
+    assertEquals(2, masked.getNumMasked());
+    assertEquals(false, masked.isValid(-1, index("location-start")));
+    assertEquals(true, masked.isValid(-1, index("person-start")));
+    assertEquals(true, masked.isValid(-1, index("start")));
+
+    int[] sequence = { index("location-start"), index("location-cont"),
+        index("person-start") };
+    assertArrayEquals(new Span[] { new Span(2, 3, "person") },
+        masked.toSpans(sequence, sequence.length));
+  }
+
+}
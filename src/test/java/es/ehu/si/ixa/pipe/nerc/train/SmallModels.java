@@ -0,0 +1,97 @@
+/*
+ *  Copyright 2014 Rodrigo Agerri
+
+   Licensed under the Apache License, Version 2.0 (the "License");
+   you may not use this file except in compliance with the License.
+   You may obtain a copy of the License at
+
+       http://www.apache.org/licenses/LICENSE-2.0
+
+   Unless required by applicable law or agreed to in writing, software
+   distributed under the License is distributed on an "AS IS" BASIS,
+   WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+   See the License for the specific language governing permissions and
+   limitations under the License.
+ */
+
+package es.ehu.si.ixa.pipe.nerc.train;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import opennlp.tools.util.CollectionObjectStream;
+import es.ehu.si.ixa.pipe.nerc.features.AdaptiveFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.CachedFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.TokenClassFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.TokenFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.features.WindowFeatureGenerator;
+import es.ehu.si.ixa.pipe.nerc.formats.CorpusSample;
+
+/**
+ * A small GIS name finder model trained on a handful of sentences, shared by
+ * the tests of the decoders and of the dense model.
+ *
+ * @author ragerri
+ */
+final class SmallModels {
+
+  private static final String[] TRAINING_SENTENCES = {
+      "<START:person> John Smith <END> lives in <START:location> London <END> .",
+      "<START:person> Mary <END> flew to <START:location> Paris <END> on Monday .",
+      "The mayor of <START:location> New York <END> met <START:person> Anne Brown <END> .",
+      "<START:organization> Acme Corp <END> opened an office in <START:location> Berlin <END> .",
+      "<START:person> Peter <END> works for <START:organization> Acme Corp <END> .",
+      "Yesterday <START:person> John <END> visited <START:location> Madrid <END> .",
+      "<START:organization> United Nations <END> officials arrived in <START:location> Rome <END> .",
+      "It rained in <START:location> London <END> and <START:location> Paris <END> .",
+      "<START:person> Anne <END> and <START:person> Mary Smith <END> founded <START:organization> Brown Ltd <END> .",
+      "Nothing happened on Sunday ." };
+
+  /**
+   * Sentences to decode, with known and unknown words.
+   */
+  static final String[][] TEST_SENTENCES = {
+      { "John", "Smith", "lives", "in", "Paris", "." },
+      { "Mary", "Brown", "works", "for", "United", "Nations", "in", "Berlin", "." },
+      { "Ms.", "Jones", "met", "the", "mayor", "of", "Lisbon", "on", "Friday", "." },
+      { "Acme", "Corp", "and", "Brown", "Ltd", "merged", "." },
+      { "zzz" },
+      { "Rome", "Rome", "Rome", "New", "York", "New", "York" } };
+
+  private static NameModel model;
+
+  private SmallModels() {
+  }
+
+  /**
+   * Creates the feature generator the model is trained with.
+   *
+   * @return a new feature generator
+   */
+  static AdaptiveFeatureGenerator createFeatureGenerator() {
+    return new CachedFeatureGenerator(
+        new WindowFeatureGenerator(new TokenFeatureGenerator(), 2, 2),
+        new WindowFeatureGenerator(new TokenClassFeatureGenerator(true), 2, 2));
+  }
+
+  /**
+   * Gets the model, trained the first time it is requested.
+   *
+   * @return the model
+   * @throws IOException if the training sentences can not be read
+   */
+  static synchronized NameModel getModel() throws IOException {
+    if (model == null) {
+      List<CorpusSample> samples = new ArrayList<CorpusSample>();
+      for (int i = 0; i < TRAINING_SENTENCES.length; i++) {
+        samples.add(CorpusSample.parse(TRAINING_SENTENCES[i], i == 0));
+      }
+      model = NameClassifier.train("en", null,
+          new CollectionObjectStream<CorpusSample>(samples),
+          createFeatureGenerator(), null, 100, 0);
+    }
+    return model;
+  }
+
+}